@@ -58,6 +58,14 @@ public class BeanContainer extends InternalContainer {
         return LockCloser.write(this.lock);
     }
 
+    public static void setCurrent(@Nonnull BeanContainer container) {
+        CURRENT.set(container);
+    }
+
+    public static void clearCurrent() {
+        CURRENT.remove();
+    }
+
     @SuppressWarnings("unchecked")
     public static <T extends BeanContainer> T getCurrent() {
         return (T) CURRENT.get();
@@ -0,0 +1,125 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.bean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Decorates an {@link ExecutorService} so that tasks run with the {@link ContextSnapshot} of the submitting thread. See
+ * {@link ContextSnapshot#wrapExecutor(ExecutorService)}
+ */
+@Getter
+public class ContextExecutorService implements ExecutorService {
+
+    @Nonnull
+    final ExecutorService delegate;
+
+    public ContextExecutorService(@Nonnull ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Nonnull
+    static <T> List<Callable<T>> wrapAll(@Nonnull Collection<? extends Callable<T>> tasks) {
+        var ctx = ContextSnapshot.capture();
+
+        var r = new ArrayList<Callable<T>>(tasks.size());
+        for (var task : tasks) {
+            r.add(ctx.wrap(task));
+        }
+        return r;
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable command) {
+        this.delegate.execute(ContextSnapshot.wrapCurrent(command));
+    }
+
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return this.delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public <T> Future<T> submit(@Nonnull Callable<T> task) {
+        return this.delegate.submit(ContextSnapshot.wrapCurrent(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(@Nonnull Runnable task, T result) {
+        return this.delegate.submit(ContextSnapshot.wrapCurrent(task), result);
+    }
+
+    @Override
+    public Future<?> submit(@Nonnull Runnable task) {
+        return this.delegate.submit(ContextSnapshot.wrapCurrent(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(@Nonnull Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return this.delegate.invokeAll(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(@Nonnull Collection<? extends Callable<T>> tasks, long timeout,
+            @Nonnull TimeUnit unit) throws InterruptedException {
+        return this.delegate.invokeAll(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(@Nonnull Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        return this.delegate.invokeAny(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(@Nonnull Collection<? extends Callable<T>> tasks, long timeout, @Nonnull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return this.delegate.invokeAny(wrapAll(tasks), timeout, unit);
+    }
+
+}
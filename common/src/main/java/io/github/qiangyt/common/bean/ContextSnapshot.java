@@ -0,0 +1,175 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.bean;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import io.github.qiangyt.common.misc.EnvExpander;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Immutable capture of the thread-bound {@link EnvExpander#getCurrent()} and {@link BeanContainer#getCurrent()}, to
+ * carry them across async boundaries:
+ *
+ * <pre>
+ * var ctx = ContextSnapshot.capture();
+ * CompletableFuture.runAsync(ctx.wrap(task), executor);
+ * // or, for every task: ContextSnapshot.wrapExecutor(executor)
+ * </pre>
+ */
+@Getter
+public final class ContextSnapshot {
+
+    public static final ContextSnapshot EMPTY = new ContextSnapshot(null, null);
+
+    /**
+     * Restores the previous context of the thread on {@link #close()}
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+    static final Scope NOOP_SCOPE = () -> {
+    };
+
+    final EnvExpander envExpander;
+
+    final BeanContainer beanContainer;
+
+    public ContextSnapshot(EnvExpander envExpander, BeanContainer beanContainer) {
+        this.envExpander = envExpander;
+        this.beanContainer = beanContainer;
+    }
+
+    @Nonnull
+    public static ContextSnapshot capture() {
+        var expander = EnvExpander.getCurrent();
+        BeanContainer container = BeanContainer.getCurrent();
+        if (expander == null && container == null) {
+            return EMPTY;
+        }
+        return new ContextSnapshot(expander, container);
+    }
+
+    public boolean isEmpty() {
+        return this.envExpander == null && this.beanContainer == null;
+    }
+
+    /**
+     * Binds this snapshot to current thread, usage: try (var scope = snapshot.attach()) { ... }
+     */
+    @Nonnull
+    public Scope attach() {
+        var prevExpander = EnvExpander.getCurrent();
+        BeanContainer prevContainer = BeanContainer.getCurrent();
+        if (prevExpander == this.envExpander && prevContainer == this.beanContainer) {
+            return NOOP_SCOPE;
+        }
+
+        bind(this.envExpander, this.beanContainer);
+        return () -> bind(prevExpander, prevContainer);
+    }
+
+    static void bind(EnvExpander expander, BeanContainer container) {
+        if (expander == null) {
+            EnvExpander.clearCurrent();
+        } else {
+            EnvExpander.setCurrent(expander);
+        }
+
+        if (container == null) {
+            BeanContainer.clearCurrent();
+        } else {
+            BeanContainer.setCurrent(container);
+        }
+    }
+
+    /**
+     * Even an empty snapshot is attached, so that the task never sees what an earlier task left on a pooled thread
+     */
+    @Nonnull
+    public Runnable wrap(@Nonnull Runnable task) {
+        return () -> {
+            try (var scope = attach()) {
+                task.run();
+            }
+        };
+    }
+
+    @Nonnull
+    public <T> Callable<T> wrap(@Nonnull Callable<T> task) {
+        return () -> {
+            try (var scope = attach()) {
+                return task.call();
+            }
+        };
+    }
+
+    @Nonnull
+    public <T> Supplier<T> wrapSupplier(@Nonnull Supplier<T> task) {
+        return () -> {
+            try (var scope = attach()) {
+                return task.get();
+            }
+        };
+    }
+
+    @Nonnull
+    public static Runnable wrapCurrent(@Nonnull Runnable task) {
+        return capture().wrap(task);
+    }
+
+    @Nonnull
+    public static <T> Callable<T> wrapCurrent(@Nonnull Callable<T> task) {
+        return capture().wrap(task);
+    }
+
+    @Nonnull
+    public static <T> Supplier<T> wrapCurrentSupplier(@Nonnull Supplier<T> task) {
+        return capture().wrapSupplier(task);
+    }
+
+    /**
+     * Each submitted task runs with the context captured by the submitting thread
+     */
+    @Nonnull
+    public static Executor wrapExecutor(@Nonnull Executor executor) {
+        if (executor instanceof ContextExecutorService) {
+            return executor;
+        }
+        if (executor instanceof ExecutorService) {
+            return new ContextExecutorService((ExecutorService) executor);
+        }
+        return task -> executor.execute(wrapCurrent(task));
+    }
+
+    @Nonnull
+    public static ExecutorService wrapExecutor(@Nonnull ExecutorService executor) {
+        if (executor instanceof ContextExecutorService) {
+            return executor;
+        }
+        return new ContextExecutorService(executor);
+    }
+
+}
@@ -16,13 +16,22 @@
  */
 package io.github.qiangyt.common.bean;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
 
 import io.github.qiangyt.common.json.Jackson;
-import io.github.qiangyt.common.json.JacksonHelper;
 import io.github.qiangyt.common.yaml.SnakeYaml;
 
 import jakarta.annotation.Nonnull;
@@ -32,18 +41,151 @@ import jakarta.annotation.Nonnull;
  */
 public interface Dumpable {
 
+    public enum Format {
+        JSON, YAML
+    }
+
+    @Nonnull
+    public static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    /**
+     * The visited objects are tracked by identity, so user-defined equals()/hashCode() are never invoked
+     */
+    @Nonnull
+    static Map<Object, Object> newVisited() {
+        return new IdentityHashMap<>();
+    }
+
+    /**
+     * The default implementation converts this object through Jackson token buffer, no JSON text in between
+     */
     @Nonnull
     @SuppressWarnings({ "null", "unchecked" })
     default Map<String, Object> toMap(Map<Object, Object> visited) {
         if (visited == null) {
-            visited = new HashMap<>();
+            visited = newVisited();
+        }
+
+        return (Map<String, Object>) visited.computeIfAbsent(this,
+                k -> Jackson.DEFAULT.getMapper().convertValue(this, MAP_TYPE));
+    }
+
+    /**
+     * The objects being dumped (so, on the current path), tracked by identity, to cut cyclic references
+     */
+    @Nonnull
+    static Set<Object> newDumping() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Writes this object straight to the generator, without building intermediate maps.
+     *
+     * The default implementation writes the output of {@link #toMap(Map)} if it is overridden (so the existing
+     * implementations keep their output), otherwise lets Jackson serialize this object directly.
+     */
+    default void dumpTo(@Nonnull JsonGenerator gen, Set<Object> dumping) throws IOException {
+        if (dumping == null) {
+            dumping = newDumping();
+        }
+
+        if (dumping.add(this) == false) {
+            gen.writeString("<cyclic reference: " + getClass().getName() + ">");
+            return;
+        }
+
+        try {
+            if (DumpableSupport.isToMapOverridden(getClass())) {
+                gen.writeObject(toMap(null));
+            } else {
+                gen.writeObject(this);
+            }
+        } finally {
+            dumping.remove(this);
+        }
+    }
+
+    /**
+     * Writes the fields of an object being dumped
+     */
+    @FunctionalInterface
+    interface FieldsWriter {
+
+        void write(@Nonnull Set<Object> dumping) throws IOException;
+
+    }
+
+    /**
+     * For {@link #dumpTo(JsonGenerator, Set)} overrides: writes a JSON object with self kept in dumping meanwhile, so
+     * that cyclic references below self are cut as well
+     */
+    static void dumpObject(@Nonnull Object self, @Nonnull JsonGenerator gen, Set<Object> dumping,
+            @Nonnull FieldsWriter fields) throws IOException {
+        if (dumping == null) {
+            dumping = newDumping();
+        }
+
+        if (dumping.add(self) == false) {
+            gen.writeString("<cyclic reference: " + self.getClass().getName() + ">");
+            return;
+        }
+
+        try {
+            gen.writeStartObject();
+            fields.write(dumping);
+            gen.writeEndObject();
+        } finally {
+            dumping.remove(self);
         }
+    }
+
+    /**
+     * Skips null values, as {@link #toMap(Map)} output does, and streams nested {@link Dumpable}s by their own
+     * {@link #dumpTo(JsonGenerator, Set)}
+     */
+    static void writeField(@Nonnull JsonGenerator gen, @Nonnull String name, Object value, @Nonnull Set<Object> dumping)
+            throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        gen.writeFieldName(name);
+        if (value instanceof Dumpable) {
+            ((Dumpable) value).dumpTo(gen, dumping);
+        } else {
+            gen.writeObject(value);
+        }
+    }
 
-        return (Map<String, Object>) visited.computeIfAbsent(this, k -> {
-            var jackson = Jackson.DEFAULT;
-            var json = jackson.toString(this, false);
-            return jackson.from(json, Map.class);
-        });
+    default void dumpTo(@Nonnull JsonGenerator gen) throws IOException {
+        dumpTo(gen, null);
+    }
+
+    /**
+     * Streams pretty-printed output to the writer. The writer is flushed but not closed.
+     */
+    default void dumpTo(@Nonnull Writer writer, @Nonnull Format format) throws IOException {
+        var jackson = (format == Format.YAML) ? Jackson.YAML : Jackson.DEFAULT;
+
+        try (var gen = jackson.getMapper().createGenerator(writer)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (format == Format.JSON) {
+                gen.useDefaultPrettyPrinter();
+            }
+            dumpTo(gen, null);
+        }
+    }
+
+    @Nonnull
+    default String dumpAsString(@Nonnull Format format) {
+        var w = new StringWriter();
+        try {
+            dumpTo(w, format);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return w.toString();
     }
 
     static Map<String, Object> toMap(Dumpable dumpable, Map<Object, Object> visited) {
@@ -62,7 +204,7 @@ public interface Dumpable {
         }
 
         if (visited == null) {
-            visited = new HashMap<>();
+            visited = newVisited();
         }
         if (visited.containsKey(list)) {
             return (List<Map<String, Object>>) visited.get(list);
@@ -88,7 +230,7 @@ public interface Dumpable {
         }
 
         if (visited == null) {
-            visited = new HashMap<>();
+            visited = newVisited();
         }
         if (visited.containsKey(map)) {
             return (Map<String, Map<String, Object>>) visited.get(map);
@@ -104,14 +246,25 @@ public interface Dumpable {
     }
 
     default String dumpAsJson(Map<Object, Object> visited) {
-        return JacksonHelper.pretty(toMap(visited));
+        if (visited == null) {
+            return dumpAsString(Format.JSON);
+        }
+        return Jackson.DEFAULT.pretty(toMap(visited));
     }
 
     default String dumpAsJson() {
         return dumpAsJson(null);
     }
 
+    /**
+     * Same SnakeYAML output of {@link #toMap(Map)} as ever, unless {@link #dumpTo(JsonGenerator, Set)} is overridden:
+     * then it's streamed as by {@link #dumpAsString(Format)}, in the style of Jackson YAML (block style, its own
+     * quoting)
+     */
     default String dumpAsYaml(Map<Object, Object> visited) {
+        if (visited == null && DumpableSupport.isDumpToOverridden(getClass())) {
+            return dumpAsString(Format.YAML);
+        }
         return SnakeYaml.build().dump(toMap(visited));
     }
 
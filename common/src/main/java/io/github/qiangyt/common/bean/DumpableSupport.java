@@ -0,0 +1,59 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.bean;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jakarta.annotation.Nonnull;
+
+class DumpableSupport {
+
+    static final ClassValue<Boolean> TO_MAP_OVERRIDDEN = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> clazz) {
+            return isOverridden(clazz, "toMap", Map.class);
+        }
+    };
+
+    static final ClassValue<Boolean> DUMP_TO_OVERRIDDEN = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> clazz) {
+            return isOverridden(clazz, "dumpTo", JsonGenerator.class, Set.class);
+        }
+    };
+
+    static boolean isOverridden(@Nonnull Class<?> clazz, @Nonnull String name, @Nonnull Class<?>... parameterTypes) {
+        try {
+            var m = clazz.getMethod(name, parameterTypes);
+            return m.getDeclaringClass() != Dumpable.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    static boolean isToMapOverridden(@Nonnull Class<?> clazz) {
+        return TO_MAP_OVERRIDDEN.get(clazz);
+    }
+
+    static boolean isDumpToOverridden(@Nonnull Class<?> clazz) {
+        return DUMP_TO_OVERRIDDEN.get(clazz);
+    }
+
+}
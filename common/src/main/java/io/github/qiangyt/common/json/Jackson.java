@@ -19,15 +19,23 @@ package io.github.qiangyt.common.json;
 import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 
 import io.github.qiangyt.common.bean.Dumpable;
 import io.github.qiangyt.common.err.BadStateException;
@@ -66,6 +74,28 @@ public class Jackson {
     @Nonnull
     public static final Jackson ENV_DUMP = new Jackson(buildDefaultMapper(true, false));
 
+    /**
+     * Binary JSON (Smile), for internal service-to-service payloads and caches
+     */
+    @Nonnull
+    public static final Jackson SMILE = new Jackson(buildDefaultMapper(new SmileFactory(), false, false));
+
+    /**
+     * Binary JSON (CBOR, RFC 8949), for internal service-to-service payloads and caches
+     */
+    @Nonnull
+    public static final Jackson CBOR = new Jackson(buildDefaultMapper(new CBORFactory(), false, false));
+
+    /**
+     * YAML, mainly for {@link Dumpable} output
+     */
+    @Nonnull
+    public static final Jackson YAML = new Jackson(
+            buildDefaultMapper(YAMLFactory.builder().disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER)
+                    .enable(YAMLGenerator.Feature.MINIMIZE_QUOTES).build(), false, false));
+
+    static final Object BLACKBIRD_TYPE_ID = new BlackbirdModule().getTypeId();
+
     public final ObjectMapper mapper;
 
     public Jackson(@Nonnull ObjectMapper mapper) {
@@ -74,14 +104,59 @@ public class Jackson {
 
     @Nonnull
     public static ObjectMapper buildDefaultMapper(boolean expandEnv, boolean dump) {
+        return buildDefaultMapper(expandEnv, dump, false);
+    }
+
+    /**
+     * @param accelerate
+     *            true to access bean properties through generated lambdas instead of reflection, see
+     *            {@link #accelerate()}
+     */
+    @Nonnull
+    public static ObjectMapper buildDefaultMapper(boolean expandEnv, boolean dump, boolean accelerate) {
         var r = new ObjectMapper();
-        initDefaultMapper(r, expandEnv, dump);
+        initDefaultMapper(r, expandEnv, dump, accelerate);
         return r;
     }
 
+    /**
+     * Same as {@link #buildDefaultMapper(boolean, boolean)}, but reads/writes the format of the specified factory, for
+     * ex. {@link SmileFactory} or {@link CBORFactory}
+     */
+    @Nonnull
+    public static ObjectMapper buildDefaultMapper(@Nonnull JsonFactory factory, boolean expandEnv, boolean dump) {
+        return buildDefaultMapper(factory, expandEnv, dump, false);
+    }
+
+    @Nonnull
+    public static ObjectMapper buildDefaultMapper(@Nonnull JsonFactory factory, boolean expandEnv, boolean dump,
+            boolean accelerate) {
+        requireNonNull(factory);
+
+        var r = new ObjectMapper(factory);
+        initDefaultMapper(r, expandEnv, dump, accelerate);
+        return r;
+    }
+
+    /**
+     * @return true if the underlying format is not textual, so only the byte-oriented methods are applicable
+     */
+    public boolean isBinary() {
+        return getMapper().getFactory().canHandleBinaryNatively();
+    }
+
     public static void initDefaultMapper(@Nonnull ObjectMapper mapper, boolean expandEnv, boolean dump) {
+        initDefaultMapper(mapper, expandEnv, dump, false);
+    }
+
+    public static void initDefaultMapper(@Nonnull ObjectMapper mapper, boolean expandEnv, boolean dump,
+            boolean accelerate) {
         requireNonNull(mapper);
 
+        if (accelerate) {
+            mapper.registerModule(new BlackbirdModule());
+        }
+
         mapper.registerModule(FileModule.build(expandEnv, dump));
         mapper.registerModule(FileObjectModule.build(expandEnv, dump));
         mapper.registerModule(DateModule.build(expandEnv, dump));
@@ -160,6 +235,27 @@ public class Jackson {
         getMapper().registerModule(module);
     }
 
+    /**
+     * Opts this instance in to bytecode-accelerated bean property access (Blackbird): getters, setters, fields and
+     * creators of POJOs (for ex. {@link io.github.qiangyt.common.bean.GenericBean}) are invoked through
+     * {@link java.lang.invoke.LambdaMetafactory}-generated lambdas instead of reflection. Custom serializers and
+     * deserializers registered by {@link #initDefaultMapper} are not affected.
+     *
+     * Must be called before the first (de)serialization, as Jackson caches the bean (de)serializers it builds.
+     */
+    @Nonnull
+    public Jackson accelerate() {
+        registerModule(new BlackbirdModule());
+        return this;
+    }
+
+    /**
+     * Whether Blackbird is registered, by {@link #accelerate()} or straight on the mapper; a set lookup
+     */
+    public boolean isAccelerated() {
+        return this.mapper.getRegisteredModuleIds().contains(BLACKBIRD_TYPE_ID);
+    }
+
     public <T> T from(String text, @Nonnull Class<T> clazz) {
         if (StringHelper.isBlank(text)) {
             return null;
@@ -203,6 +299,24 @@ public class Jackson {
         }
     }
 
+    /**
+     * Reads straight from the stream without buffering it into a String; empty input gives null
+     */
+    public <T> T from(InputStream in, @Nonnull JavaType type) {
+        if (in == null) {
+            return null;
+        }
+
+        try (var parser = getMapper().createParser(in)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return getMapper().readValue(parser, type);
+        } catch (IOException e) {
+            throw new BadStateException(e);
+        }
+    }
+
     public <T> T from(String text, @Nonnull TypeReference<T> typeReference) {
         if (StringHelper.isBlank(text)) {
             return null;
@@ -285,7 +399,15 @@ public class Jackson {
         if (object == null) {
             return null;
         }
-        return toByteBuffer(object, pretty).array();
+
+        try {
+            if (pretty) {
+                return getMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(object);
+            }
+            return getMapper().writeValueAsBytes(object);
+        } catch (IOException e) {
+            throw new BadStateException(e);
+        }
     }
 
     public ByteBuffer toByteBuffer(Object object, boolean pretty) {
@@ -302,7 +424,7 @@ public class Jackson {
                 getMapper().writeValue(buf, object);
             }
 
-            return ByteBuffer.wrap(buf.getCurrentSegment(), 0, buf.getCurrentSegmentLength());
+            return ByteBuffer.wrap(buf.toByteArray());
         } catch (IOException e) {
             throw new BadStateException(e);
         }
@@ -20,12 +20,14 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonTokenId;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
 import io.github.qiangyt.common.err.BadValueException;
 import io.github.qiangyt.common.misc.EnvExpander;
 import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
@@ -33,22 +35,65 @@ public abstract class JacksonDeserializer<T> extends JsonDeserializer<T> {
 
     final boolean expandEnv;
 
+    @Getter(AccessLevel.NONE)
+    final boolean longSupported;
+
+    @Getter(AccessLevel.NONE)
+    final boolean doubleSupported;
+
     protected JacksonDeserializer(boolean expandEnv) {
         this.expandEnv = expandEnv;
+        this.longSupported = isOverridden(getClass(), long.class);
+        this.doubleSupported = isOverridden(getClass(), double.class);
+    }
+
+    static boolean isOverridden(@Nonnull Class<?> clazz, @Nonnull Class<?> parameterType) {
+        for (var c = clazz; c != JacksonDeserializer.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("deserialize", parameterType);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // continue with super class
+            }
+        }
+        return false;
     }
 
+    /**
+     * Dispatches on the current token: numbers go to {@link #deserialize(long)} / {@link #deserialize(double)} if
+     * overridden, without intermediate string; strings are expanded only if containing placeholder
+     */
     @Override
     public T deserialize(JsonParser p, DeserializationContext ctx) throws IOException, JsonProcessingException {
-        String text = p.getValueAsString();
-        if (text == null) {
-            return null;
-        }
+        try {
+            String text;
 
-        if (isExpandEnv()) {
-            text = EnvExpander.tryExpands(text);
-        }
+            switch (p.currentTokenId()) {
+            case JsonTokenId.ID_NUMBER_INT:
+                if (this.longSupported && p.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    return deserialize(p.getLongValue());
+                }
+                return deserialize(p.getText());
+            case JsonTokenId.ID_NUMBER_FLOAT:
+                if (this.doubleSupported) {
+                    return deserialize(p.getDoubleValue());
+                }
+                return deserialize(p.getText());
+            case JsonTokenId.ID_STRING:
+                text = p.getText();
+                break;
+            default:
+                text = p.getValueAsString();
+                if (text == null) {
+                    return null;
+                }
+                break;
+            }
+
+            if (isExpandEnv() && EnvExpander.hasPlaceholder(text)) {
+                text = EnvExpander.tryExpands(text);
+            }
 
-        try {
             return deserialize(text);
         } catch (RuntimeException | IOException ex) {
             throw ex;
@@ -62,4 +107,21 @@ public abstract class JacksonDeserializer<T> extends JsonDeserializer<T> {
         throw new BadValueException("deserialization is NOT supported");
     }
 
+    /**
+     * Override to decode integer tokens directly. Otherwise the token text is passed to {@link #deserialize(String)}
+     */
+    @Nonnull
+    protected T deserialize(long value) throws Exception {
+        return deserialize(Long.toString(value));
+    }
+
+    /**
+     * Override to decode floating-point tokens directly. Otherwise the token text is passed to
+     * {@link #deserialize(String)}
+     */
+    @Nonnull
+    protected T deserialize(double value) throws Exception {
+        return deserialize(Double.toString(value));
+    }
+
 }
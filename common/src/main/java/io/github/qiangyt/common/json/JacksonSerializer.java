@@ -17,12 +17,18 @@
 package io.github.qiangyt.common.json;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
+import io.github.qiangyt.common.err.BadStateException;
 import io.github.qiangyt.common.err.BadValueException;
 import jakarta.annotation.Nonnull;
 import lombok.Getter;
@@ -30,10 +36,135 @@ import lombok.Getter;
 @Getter
 public abstract class JacksonSerializer<T> extends JsonSerializer<T> {
 
+    @FunctionalInterface
+    public static interface Accessor<T, V> {
+
+        V get(@Nonnull T value) throws Exception;
+
+    }
+
+    @Getter
+    public static class Field<T> {
+
+        @Nonnull
+        final SerializedString name;
+
+        @Nonnull
+        final Accessor<T, ?> accessor;
+
+        final JsonSerializer<Object> serializer;
+
+        @SuppressWarnings("unchecked")
+        Field(@Nonnull String name, @Nonnull Accessor<T, ?> accessor, JsonSerializer<?> serializer) {
+            this.name = new SerializedString(name);
+            this.accessor = accessor;
+            this.serializer = (JsonSerializer<Object>) serializer;
+        }
+
+        void write(@Nonnull T value, @Nonnull JsonGenerator gen, @Nonnull SerializerProvider provider)
+                throws Exception {
+            gen.writeFieldName(this.name);
+
+            var v = this.accessor.get(value);
+            if (v == null) {
+                gen.writeNull();
+            } else if (this.serializer != null) {
+                this.serializer.serialize(v, gen, provider);
+            } else {
+                writeValue(v, gen, provider);
+            }
+        }
+
+    }
+
+    /**
+     * Declarative object layout: the fields are written in declaration order, straight to the generator, no
+     * intermediate map
+     */
+    public static class Fields<T> {
+
+        @Nonnull
+        final List<Field<T>> fields = new ArrayList<>();
+
+        @Nonnull
+        public Fields<T> add(@Nonnull String name, @Nonnull Accessor<T, ?> accessor) {
+            return add(name, accessor, null);
+        }
+
+        @Nonnull
+        public <V> Fields<T> add(@Nonnull String name, @Nonnull Accessor<T, V> accessor,
+                JsonSerializer<? super V> serializer) {
+            this.fields.add(new Field<>(name, accessor, serializer));
+            return this;
+        }
+
+        public void write(@Nonnull T value, @Nonnull JsonGenerator gen, @Nonnull SerializerProvider provider)
+                throws Exception {
+            gen.writeStartObject(value);
+            for (var f : this.fields) {
+                f.write(value, gen, provider);
+            }
+            gen.writeEndObject();
+        }
+
+        /**
+         * Field values by name, in declaration order; all null for null value
+         */
+        @Nonnull
+        public Map<String, Object> toMap(T value) {
+            var r = new LinkedHashMap<String, Object>();
+            for (var f : this.fields) {
+                try {
+                    r.put(f.name.getValue(), (value == null) ? null : f.accessor.get(value));
+                } catch (Exception e) {
+                    throw new BadStateException(e);
+                }
+            }
+            return r;
+        }
+
+    }
+
     final boolean dump;
 
+    final Fields<T> fields;
+
     protected JacksonSerializer(boolean dump) {
+        this(dump, null);
+    }
+
+    /**
+     * @param fields
+     *            if specified, is written for both dump and normal serialization, unless
+     *            {@link #dumpValue(Object, JsonGenerator, SerializerProvider)} /
+     *            {@link #serializeValue(Object, JsonGenerator, SerializerProvider)} is overridden. The
+     *            {@link #dump(Object, JsonGenerator)} / {@link #serialize(Object, JsonGenerator)} hooks are not called
+     *            in that case
+     */
+    protected JacksonSerializer(boolean dump, Fields<T> fields) {
         this.dump = dump;
+        this.fields = fields;
+    }
+
+    /**
+     * Writes scalars directly, and resolves others through the serializers of current provider (instead of
+     * {@link JsonGenerator#writeObject(Object)} which starts a new serialization)
+     */
+    public static void writeValue(Object value, @Nonnull JsonGenerator gen, @Nonnull SerializerProvider provider)
+            throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String) {
+            gen.writeString((String) value);
+        } else if (value instanceof Integer) {
+            gen.writeNumber((Integer) value);
+        } else if (value instanceof Long) {
+            gen.writeNumber((Long) value);
+        } else if (value instanceof Boolean) {
+            gen.writeBoolean((Boolean) value);
+        } else {
+            provider.defaultSerializeValue(value, gen);
+        }
     }
 
     @Override
@@ -45,9 +176,9 @@ public abstract class JacksonSerializer<T> extends JsonSerializer<T> {
         } else {
             try {
                 if (isDump()) {
-                    dump(value, gen);
+                    dumpValue(value, gen, serializers);
                 } else {
-                    serialize(value, gen);
+                    serializeValue(value, gen, serializers);
                 }
             } catch (RuntimeException | IOException ex) {
                 throw ex;
@@ -57,6 +188,26 @@ public abstract class JacksonSerializer<T> extends JsonSerializer<T> {
         }
     }
 
+    protected void dumpValue(@Nonnull T value, @Nonnull JsonGenerator gen, @Nonnull SerializerProvider provider)
+            throws Exception {
+        var f = getFields();
+        if (f != null) {
+            f.write(value, gen, provider);
+        } else {
+            dump(value, gen);
+        }
+    }
+
+    protected void serializeValue(@Nonnull T value, @Nonnull JsonGenerator gen, @Nonnull SerializerProvider provider)
+            throws Exception {
+        var f = getFields();
+        if (f != null) {
+            f.write(value, gen, provider);
+        } else {
+            serialize(value, gen);
+        }
+    }
+
     @Nonnull
     protected void dump(@Nonnull T value, @Nonnull JsonGenerator gen) throws Exception {
         throw new BadValueException("serialization is NOT supported");
@@ -21,26 +21,51 @@ import jakarta.annotation.Nonnull;
 import com.fasterxml.jackson.core.type.TypeReference;
 import static java.util.Objects.requireNonNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.ProxySelector;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import lombok.AccessLevel;
 import lombok.Getter;
+import io.github.qiangyt.common.bean.ContextSnapshot;
 import io.github.qiangyt.common.bean.Dumpable;
 import io.github.qiangyt.common.err.BadStateException;
+import io.github.qiangyt.common.err.BadValueException;
 import io.github.qiangyt.common.misc.StringHelper;
 
+/**
+ * Immutable once constructed, so one instance serves concurrent callers: each call builds its own {@link HttpRequest}
+ * from {@link #getUri()}/{@link #getHeaders()}, and gets the response in a {@link JsonAPIResult}.
+ */
 @Getter
-public class JsonAPI implements Dumpable {
+public class JsonAPI implements Dumpable, AutoCloseable {
 
     @Nonnull
     final Jackson jackson;
@@ -51,15 +76,38 @@ public class JsonAPI implements Dumpable {
     final String path;
 
     @Nonnull
-    final HttpRequest.Builder request;
+    final URI uri;
+
+    /** null if {@link JsonAPIConfig#getEndpoints()} is empty */
+    final JsonAPIEndpoints endpoints;
+
+    /** {@link #getUri()} resolved against each of {@link #getEndpoints()}, by index */
+    @Nonnull
+    final List<URI> endpointUris;
 
+    /** unmodifiable, sent with every request */
     @Nonnull
-    final HttpClient.Builder client;
+    final Map<String, String> headers;
+
+    @Nonnull
+    final Duration timeout;
+
+    /** shared by the {@link JsonAPI}s with the same client settings, see {@link JsonAPIClients} */
+    @Nonnull
+    final HttpClient client;
+
+    /** key of the acquired shared client, null if {@link #initClient()} is overridden */
+    @Getter(AccessLevel.NONE)
+    JsonAPIClients.Key clientKey;
 
-    HttpResponse<String> response;
+    @Getter(AccessLevel.NONE)
+    final AtomicBoolean closed = new AtomicBoolean();
 
     @Nonnull
-    JsonAPIErrorHandler errorHandler;
+    final JsonAPIErrorHandler errorHandler;
+
+    /** null if {@link JsonAPIConfig#getRetryPolicy()} is not set */
+    final JsonAPIRetryer retryer;
 
     public JsonAPI(@Nonnull JsonAPIConfig config) {
         this(Jackson.JSON_CLIENT, config);
@@ -94,8 +142,13 @@ public class JsonAPI implements Dumpable {
         this.jackson = jackson;
         this.config = requireNonNull(config);
         this.path = requireNonNull(path);
-        this.errorHandler = errorHandler;
-        this.request = initRequest();
+        this.errorHandler = requireNonNull(errorHandler);
+        this.uri = initUri();
+        this.endpoints = JsonAPIEndpoints.of(config);
+        this.endpointUris = initEndpointUris();
+        this.headers = Collections.unmodifiableMap(initHeaders());
+        this.timeout = Duration.ofSeconds(config.getReadTimeoutSeconds());
+        this.retryer = (config.getRetryPolicy() == null) ? null : new JsonAPIRetryer(config.getRetryPolicy());
         this.client = initClient();
     }
 
@@ -103,7 +156,7 @@ public class JsonAPI implements Dumpable {
     @Override
     public @Nonnull Map<String, Object> toMap(Map<Object, Object> visited) {
         if (visited == null) {
-            visited = new HashMap<>();
+            visited = Dumpable.newVisited();
         }
         if (visited.containsKey(this)) {
             return (Map<String, Object>) visited.get(this);
@@ -112,31 +165,56 @@ public class JsonAPI implements Dumpable {
         var r = new HashMap<String, Object>();
         r.put("config", getConfig().toMap(visited));
         r.put("path", getPath());
-        r.put("request", getRequest());
-        r.put("client", getClient());
-
-        if (getResponse() != null) {
-            r.put("response", getResponse());
-        }
+        r.put("uri", getUri());
+        r.put("headers", getHeaders());
+        r.put("client", String.valueOf(getClient()));
 
         visited.put(this, r);
         return r;
     }
 
+    @Override
+    public void dumpTo(@Nonnull JsonGenerator gen, Set<Object> dumping) throws IOException {
+        Dumpable.dumpObject(this, gen, dumping, d -> {
+            Dumpable.writeField(gen, "config", getConfig(), d);
+            Dumpable.writeField(gen, "path", getPath(), d);
+            gen.writeStringField("uri", getUri().toString());
+            Dumpable.writeField(gen, "headers", getHeaders(), d);
+            gen.writeStringField("client", String.valueOf(getClient()));
+        });
+    }
+
     @Override
     public String toString() {
         return requireNonNull(dumpAsJson(null));
     }
 
-    protected @Nonnull HttpRequest.Builder initRequest() {
-        var cfg = getConfig();
+    @Nonnull
+    protected URI initUri() {
+        return resolveUri(getConfig().getEndpoint());
+    }
+
+    @Nonnull
+    protected List<URI> initEndpointUris() {
+        if (getEndpoints() == null) {
+            return List.of();
+        }
+
+        var r = new ArrayList<URI>();
+        for (var ep : getEndpoints().getEndpoints()) {
+            r.add(resolveUri(ep.getUri()));
+        }
+        return Collections.unmodifiableList(r);
+    }
 
+    @Nonnull
+    protected URI resolveUri(@Nonnull URI endpoint) {
         var paz = getPath();
         if (paz.startsWith("/")) {
             paz = paz.substring(1);
         }
 
-        var url = cfg.getEndpoint().toString();
+        var url = endpoint.toString();
         if (StringHelper.notBlank(paz)) {
             if (url.endsWith("/")) {
                 url += paz;
@@ -145,20 +223,41 @@ public class JsonAPI implements Dumpable {
             }
         }
 
-        var r = HttpRequest.newBuilder();
         try {
-            r.uri(new URI(url));
+            return new URI(url);
         } catch (URISyntaxException e) {
             throw new BadStateException(e);
         }
+    }
 
-        r.timeout(Duration.ofSeconds(config.getReadTimeoutSeconds()));
-        r.header("Content-Type", "application/json");
-        r.header("Accepted", "application/json");
-
+    @Nonnull
+    protected Map<String, String> initHeaders() {
+        var r = new LinkedHashMap<String, String>();
+        r.put("Content-Type", "application/json");
+        r.put("Accept", "application/json");
+        if (getConfig().isAcceptCompression()) {
+            r.put("Accept-Encoding", JsonAPICompression.ACCEPT_ENCODING);
+        }
         return r;
     }
 
+    /**
+     * A fresh builder per call, initialized from the immutable request template
+     */
+    @Nonnull
+    protected HttpRequest.Builder newRequest() {
+        return newRequest(getUri());
+    }
+
+    @Nonnull
+    protected HttpRequest.Builder newRequest(@Nonnull URI uri) {
+        var r = HttpRequest.newBuilder(uri).timeout(getTimeout());
+        for (var h : getHeaders().entrySet()) {
+            r.header(h.getKey(), h.getValue());
+        }
+        return requireNonNull(r);
+    }
+
     public <T> T GET(Object requestBody, @Nonnull Class<T> responseBodyClass) {
         return execute("GET", requestBody, responseBodyClass);
     }
@@ -186,15 +285,15 @@ public class JsonAPI implements Dumpable {
         return execute("PATCH", requestBody, responseTypeReference);
     }
 
+    public <T> T PATCH(@Nonnull Class<T> responseBodyClass) {
+        return PATCH(null, responseBodyClass);
+    }
+
     @Nonnull
     public <T> T PATCH(@Nonnull TypeReference<T> responseTypeReference) {
         return PATCH(null, responseTypeReference);
     }
 
-    public <T> T PATCH(@Nonnull Class<T> responseBodyClass) {
-        return PATCH(null, responseBodyClass);
-    }
-
     public <T> T PUT(Object requestBody, @Nonnull Class<T> responseBodyClass) {
         return execute("PUT", requestBody, responseBodyClass);
     }
@@ -249,64 +348,772 @@ public class JsonAPI implements Dumpable {
         return DELETE(null, responseTypeReference);
     }
 
-    protected <T> T execute(@Nonnull String method, Object requestBody, @Nonnull Class<T> responseBodyClass) {
-        var resp = doExecute(method, requestBody);
+    @Nonnull
+    public <T> CompletableFuture<T> GETAsync(Object requestBody, @Nonnull Class<T> responseBodyClass) {
+        return executeAsync("GET", requestBody, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> GETAsync(Object requestBody, @Nonnull TypeReference<T> responseTypeReference) {
+        return executeAsync("GET", requestBody, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> GETAsync(@Nonnull Class<T> responseBodyClass) {
+        return GETAsync(null, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> GETAsync(@Nonnull TypeReference<T> responseTypeReference) {
+        return GETAsync(null, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PATCHAsync(Object requestBody, @Nonnull Class<T> responseBodyClass) {
+        return executeAsync("PATCH", requestBody, responseBodyClass);
+    }
 
-        var respBodyJson = resp.body();
-        return JacksonHelper.from(respBodyJson, responseBodyClass);
+    @Nonnull
+    public <T> CompletableFuture<T> PATCHAsync(Object requestBody, @Nonnull TypeReference<T> responseTypeReference) {
+        return executeAsync("PATCH", requestBody, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PATCHAsync(@Nonnull Class<T> responseBodyClass) {
+        return PATCHAsync(null, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PATCHAsync(@Nonnull TypeReference<T> responseTypeReference) {
+        return PATCHAsync(null, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PUTAsync(Object requestBody, @Nonnull Class<T> responseBodyClass) {
+        return executeAsync("PUT", requestBody, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PUTAsync(Object requestBody, @Nonnull TypeReference<T> responseTypeReference) {
+        return executeAsync("PUT", requestBody, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PUTAsync(@Nonnull Class<T> responseBodyClass) {
+        return PUTAsync(null, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> PUTAsync(@Nonnull TypeReference<T> responseTypeReference) {
+        return PUTAsync(null, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> POSTAsync(Object requestBody, @Nonnull Class<T> responseBodyClass) {
+        return executeAsync("POST", requestBody, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> POSTAsync(Object requestBody, @Nonnull TypeReference<T> responseTypeReference) {
+        return executeAsync("POST", requestBody, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> POSTAsync(@Nonnull Class<T> responseBodyClass) {
+        return POSTAsync(null, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> POSTAsync(@Nonnull TypeReference<T> responseTypeReference) {
+        return POSTAsync(null, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> DELETEAsync(Object requestBody, @Nonnull Class<T> responseBodyClass) {
+        return executeAsync("DELETE", requestBody, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> DELETEAsync(Object requestBody, @Nonnull TypeReference<T> responseTypeReference) {
+        return executeAsync("DELETE", requestBody, responseTypeReference);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> DELETEAsync(@Nonnull Class<T> responseBodyClass) {
+        return DELETEAsync(null, responseBodyClass);
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> DELETEAsync(@Nonnull TypeReference<T> responseTypeReference) {
+        return DELETEAsync(null, responseTypeReference);
+    }
+
+    protected <T> T execute(@Nonnull String method, Object requestBody, @Nonnull Class<T> responseBodyClass) {
+        return exchange(method, requestBody, responseBodyClass).getBody();
     }
 
     @Nonnull
     protected <T> T execute(@Nonnull String method, Object requestBody,
             @Nonnull TypeReference<T> responseTypeReference) {
-        var resp = doExecute(method, requestBody);
+        return requireNonNull(exchange(method, requestBody, responseTypeReference).getBody());
+    }
 
-        var respBodyJson = resp.body();
-        var r = JacksonHelper.from(respBodyJson, responseTypeReference);
-        return requireNonNull(r);
+    @Nonnull
+    protected <T> CompletableFuture<T> executeAsync(@Nonnull String method, Object requestBody,
+            @Nonnull Class<T> responseBodyClass) {
+        return exchangeAsync(method, requestBody, responseBodyClass).thenApply(JsonAPIResult::getBody);
     }
 
     @Nonnull
-    protected HttpResponse<String> doExecute(@Nonnull String method, Object requestBody) {
-        requireNonNull(method);
+    protected <T> CompletableFuture<T> executeAsync(@Nonnull String method, Object requestBody,
+            @Nonnull TypeReference<T> responseTypeReference) {
+        return exchangeAsync(method, requestBody, responseTypeReference)
+                .thenApply(result -> requireNonNull(result.getBody()));
+    }
+
+    /**
+     * Same as {@link #GET(Object, Class)} etc., but also returns the status code and headers. Runs the same pipeline as
+     * {@link #exchangeAsync(String, Object, Class)} and waits for it
+     */
+    @Nonnull
+    public <T> JsonAPIResult<T> exchange(@Nonnull String method, Object requestBody,
+            @Nonnull Class<T> responseBodyClass) {
+        return exchange(getUri(), method, requestBody, readerFor(constructType(responseBodyClass)));
+    }
 
-        String reqBodyJson;
-        if (requestBody != null) {
-            reqBodyJson = JacksonHelper.to(requestBody);
+    @Nonnull
+    public <T> JsonAPIResult<T> exchange(@Nonnull String method, Object requestBody,
+            @Nonnull TypeReference<T> responseTypeReference) {
+        return exchange(getUri(), method, requestBody, readerFor(constructType(responseTypeReference)));
+    }
+
+    /**
+     * The response body is received as a stream and bound on the calling thread straight from it, without being
+     * tokenized into memory first. Calls going through {@link JsonAPIConfig#getSingleFlight()} or
+     * {@link JsonAPIConfig#getResponseCache()} take the async way, as they share or store the whole body
+     */
+    @Nonnull
+    protected <T> JsonAPIResult<T> exchange(@Nonnull URI uri, @Nonnull String method, Object requestBody,
+            @Nonnull ObjectReader reader) {
+        var singleFlight = getConfig().getSingleFlight();
+        if ((singleFlight != null && singleFlight.accept(method)) || isCacheable(method, requestBody)) {
+            return join(exchangeAsync(uri, method, requestBody, reader));
+        }
+
+        var resp = join(doExecuteAsync(uri, method, requestBody, streamingBodyHandler()));
+        return toResult(resp, reader);
+    }
+
+    /**
+     * Waits for the future, rethrowing the exception it failed with rather than a {@link CompletionException}
+     */
+    public static <T> T join(@Nonnull CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BadStateException(cause);
+        }
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<JsonAPIResult<T>> exchangeAsync(@Nonnull String method, Object requestBody,
+            @Nonnull Class<T> responseBodyClass) {
+        return exchangeAsync(method, requestBody, constructType(responseBodyClass));
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<JsonAPIResult<T>> exchangeAsync(@Nonnull String method, Object requestBody,
+            @Nonnull TypeReference<T> responseTypeReference) {
+        return exchangeAsync(method, requestBody, constructType(responseTypeReference));
+    }
+
+    @Nonnull
+    protected <T> CompletableFuture<JsonAPIResult<T>> exchangeAsync(@Nonnull String method, Object requestBody,
+            @Nonnull JavaType type) {
+        return exchangeAsync(getUri(), method, requestBody, readerFor(type));
+    }
+
+    /**
+     * To another uri than {@link #getUri()}, usually {@link #resolve(String)}. Identical concurrent calls share one
+     * exchange if {@link JsonAPIConfig#getSingleFlight()} is configured
+     */
+    @Nonnull
+    protected <T> CompletableFuture<JsonAPIResult<T>> exchangeAsync(@Nonnull URI uri, @Nonnull String method,
+            Object requestBody, @Nonnull ObjectReader reader) {
+        var singleFlight = getConfig().getSingleFlight();
+        if (singleFlight == null || singleFlight.accept(method) == false) {
+            return doExchangeAsync(uri, method, requestBody, reader);
+        }
+
+        // serialized once, for both the key and the request actually sent
+        JsonAPIBody body;
+        JsonAPISingleFlight.Key key;
+        try {
+            body = (requestBody == null) ? null : new JsonAPIBody(serializeBody(requestBody));
+            var bytes = (body == null) ? null : body.getBytes();
+            key = new JsonAPISingleFlight.Key(method, uri, getHeaders(), bytes, reader.getValueType());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return singleFlight.execute(key, () -> doExchangeAsync(uri, method, body, reader));
+    }
+
+    /**
+     * GETs without body go through {@link JsonAPIConfig#getResponseCache()} if configured
+     */
+    @Nonnull
+    protected <T> CompletableFuture<JsonAPIResult<T>> doExchangeAsync(@Nonnull URI uri, @Nonnull String method,
+            Object requestBody, @Nonnull ObjectReader reader) {
+        if (isCacheable(method, requestBody)) {
+            return exchangeCachedAsync(uri, getConfig().getResponseCache(), reader);
+        }
+        return toResultAsync(doExecuteAsync(uri, method, requestBody, asyncBodyHandler()), reader);
+    }
+
+    protected boolean isCacheable(@Nonnull String method, Object requestBody) {
+        return getConfig().getResponseCache() != null && "GET".equals(method) && requestBody == null;
+    }
+
+    /**
+     * {@link #getUri()} with the relative part appended as is, e.g. "/123" or "?id=123"
+     */
+    @Nonnull
+    public URI resolve(String relative) {
+        if (StringHelper.isBlank(relative)) {
+            return getUri();
+        }
+        try {
+            return new URI(getUri().toString() + relative);
+        } catch (URISyntaxException e) {
+            throw new BadValueException(e, "invalid uri: %s", relative);
+        }
+    }
+
+    /**
+     * A fresh cache entry is returned without any request. Otherwise the request is sent, conditional if the stale
+     * entry has a validator: a 304 refreshes the entry and returns its body, a 200 body is received as bytes and stored
+     * if its headers allow
+     */
+    @Nonnull
+    protected <T> CompletableFuture<JsonAPIResult<T>> exchangeCachedAsync(@Nonnull URI uri, @Nonnull JsonAPICache cache,
+            @Nonnull ObjectReader reader) {
+        var key = new JsonAPICache.Key(uri, getHeaders());
+        var entry = cache.get(key);
+        if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+            cache.getHits().incrementAndGet();
+            return thenApplyWithContext(CompletableFuture.completedFuture(entry), e -> toResult(cache, e, reader));
+        }
+
+        var req = newRequest(uri).GET();
+        boolean conditional = entry != null && entry.isRevalidatable();
+        if (conditional) {
+            var etag = entry.getETag();
+            if (etag != null) {
+                req.header("If-None-Match", etag);
+            }
+            var lastModified = entry.getLastModified();
+            if (lastModified != null) {
+                req.header("If-Modified-Since", lastModified);
+            }
+        }
+
+        var bodyHandler = asyncBodyHandler();
+        @SuppressWarnings("unchecked")
+        HttpResponse.BodyHandler<Object> handler = info -> {
+            if (info.statusCode() == 200) {
+                return (HttpResponse.BodySubscriber<Object>) (Object) HttpResponse.BodySubscribers.ofByteArray();
+            }
+            if (info.statusCode() == 304 && conditional) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            return bodyHandler.apply(info);
+        };
+
+        return thenApplyWithContext(sendAsync(requireNonNull(req.build()), handler), resp -> {
+            int sc = resp.statusCode();
+            if (sc == 304 && conditional) {
+                return toResult(cache, cache.revalidated(key, entry, resp.headers()), reader);
+            }
+            if (sc != 200) {
+                return toResult(resp, reader);
+            }
+
+            cache.getMisses().incrementAndGet();
+            var bytes = (byte[]) resp.body();
+            var stored = cache.put(key, resp.headers(), bytes);
+            if (stored == null) {
+                return new JsonAPIResult<>(sc, resp.headers(), readBody(bytes, reader), null);
+            }
+            return toResult(cache, stored, reader);
+        });
+    }
+
+    /**
+     * Deserializes the cached body, or reuses the deserialized one if {@link JsonAPICache#isCacheDeserialized()}
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    protected <T> JsonAPIResult<T> toResult(@Nonnull JsonAPICache cache, @Nonnull JsonAPICache.Entry entry,
+            @Nonnull ObjectReader reader) {
+        T body;
+        if (cache.isCacheDeserialized()) {
+            body = (T) entry.getValues().computeIfAbsent(reader.getValueType(), t -> readBody(entry.getBody(), reader));
         } else {
-            reqBodyJson = "";
+            body = readBody(entry.getBody(), reader);
         }
-        getRequest().method(method, BodyPublishers.ofString(reqBodyJson));
+        return new JsonAPIResult<>(200, entry.getHeaders(), body, null);
+    }
+
+    /**
+     * Fans the requests out with at most parallelism of them outstanding, see {@link JsonAPIBatch}
+     *
+     * @param ordered
+     *            true to get the items in input order, false in completion order
+     */
+    @Nonnull
+    public <T> JsonAPIBatch<T> executeAll(@Nonnull List<JsonAPIRequest> requests, int parallelism, boolean ordered,
+            @Nonnull Class<T> responseBodyClass) {
+        return executeAll(requests, parallelism, ordered, constructType(responseBodyClass), null);
+    }
+
+    @Nonnull
+    public <T> JsonAPIBatch<T> executeAll(@Nonnull List<JsonAPIRequest> requests, int parallelism, boolean ordered,
+            @Nonnull TypeReference<T> responseTypeReference) {
+        return executeAll(requests, parallelism, ordered, constructType(responseTypeReference), null);
+    }
+
+    /**
+     * @param progressListener
+     *            called after each item completes, on the completing thread
+     */
+    @Nonnull
+    public <T> JsonAPIBatch<T> executeAll(@Nonnull List<JsonAPIRequest> requests, int parallelism, boolean ordered,
+            @Nonnull JavaType type, Consumer<JsonAPIBatch<T>> progressListener) {
+        var r = new JsonAPIBatch<T>(this, requests, readerFor(type), parallelism, ordered, progressListener);
+        r.startMore();
+        return r;
+    }
 
-        HttpResponse<String> resp = null;
+    /**
+     * Lazily GETs the pages of a listing from the relative uri (see {@link #resolve(String)}) on, see
+     * {@link JsonAPIPager}
+     *
+     * @param itemsPointer
+     *            JSON pointer of the item array in a page, e.g. "/data", or "" if the page itself is the array
+     */
+    @Nonnull
+    public <T> JsonAPIPager<T> paginate(String relative, @Nonnull JsonAPIPagination pagination,
+            @Nonnull String itemsPointer, @Nonnull Class<T> itemClass) {
+        return paginate(relative, pagination, itemsPointer, constructType(itemClass));
+    }
+
+    @Nonnull
+    public <T> JsonAPIPager<T> paginate(String relative, @Nonnull JsonAPIPagination pagination,
+            @Nonnull String itemsPointer, @Nonnull TypeReference<T> itemTypeReference) {
+        return paginate(relative, pagination, itemsPointer, constructType(itemTypeReference));
+    }
+
+    @Nonnull
+    public <T> JsonAPIPager<T> paginate(String relative, @Nonnull JsonAPIPagination pagination,
+            @Nonnull String itemsPointer, @Nonnull JavaType itemType) {
+        return new JsonAPIPager<>(this, resolve(relative), pagination, itemsPointer, readerFor(itemType));
+    }
+
+    /**
+     * Publishes the elements of the root JSON array of the response as soon as each one is parsed, without blocking any
+     * thread while the body arrives, see {@link JsonElementPublisher}
+     */
+    @Nonnull
+    public <T> CompletableFuture<Flow.Publisher<T>> streamAsync(@Nonnull String method, Object requestBody,
+            @Nonnull Class<T> elementClass) {
+        return toPublisherAsync(method, requestBody, constructType(elementClass));
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<Flow.Publisher<T>> streamAsync(@Nonnull String method, Object requestBody,
+            @Nonnull TypeReference<T> elementTypeReference) {
+        return toPublisherAsync(method, requestBody, constructType(elementTypeReference));
+    }
+
+    /**
+     * Resolves the deserializer of the type once, for all the calls made with the reader
+     */
+    @Nonnull
+    protected ObjectReader readerFor(@Nonnull JavaType type) {
+        return requireNonNull(getJackson().getMapper().readerFor(type));
+    }
+
+    @Nonnull
+    protected JavaType constructType(@Nonnull Class<?> clazz) {
+        return requireNonNull(getJackson().getMapper().constructType(clazz));
+    }
+
+    @Nonnull
+    protected JavaType constructType(@Nonnull TypeReference<?> typeReference) {
+        return requireNonNull(getJackson().getMapper().getTypeFactory().constructType(typeReference));
+    }
+
+    /**
+     * Deserializes 2xx response bodies straight from the stream, or from the tokens parsed by
+     * {@link JsonTokenSubscriber}. Non-2xx responses go to
+     * {@link JsonAPIErrorHandler#onErrorResponse(JsonAPIResult, JsonAPI)} first: the error body is read, up to
+     * {@link JsonAPIConfig#getMaxErrorBodySize()} bytes, only if the handler asks for it, and the response body is
+     * deserialized only if the handler doesn't throw
+     */
+    @Nonnull
+    protected <T> JsonAPIResult<T> toResult(@Nonnull HttpResponse<?> resp, @Nonnull ObjectReader reader) {
+        int sc = resp.statusCode();
+        if (sc / 100 == 2) {
+            return new JsonAPIResult<>(sc, resp.headers(), readBody(resp.body(), reader), null);
+        }
+
+        try (var errorBody = handleErrorResponse(resp)) {
+            // before the rest of the body is consumed, so that the result never refers to the closed stream; the head
+            // is
+            // kept only if the handler has read it
+            var head = errorBody.snapshot();
+            return new JsonAPIResult<>(sc, resp.headers(), readBody(errorBody.remaining(), reader), head);
+        }
+    }
+
+    /**
+     * @return the error body, to read the rest of the response from, if the handler doesn't throw
+     */
+    @Nonnull
+    protected JsonAPIResult.ErrorBody handleErrorResponse(@Nonnull HttpResponse<?> resp) {
+        var errorBody = new JsonAPIResult.ErrorBody((InputStream) resp.body(), getConfig().getMaxErrorBodySize());
         try {
-            resp = client.build().send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            getErrorHandler().onErrorResponse(new JsonAPIResult<>(resp.statusCode(), resp.headers(), null, errorBody),
+                    this);
+            return errorBody;
+        } catch (RuntimeException e) {
+            errorBody.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Binds by the reader, from the stream without buffering it; empty body gives null
+     */
+    protected <T> T readBody(Object body, @Nonnull ObjectReader reader) {
+        if (body == null) {
+            return null;
+        }
+
+        if (body instanceof byte[]) {
+            return readBody(new ByteArrayInputStream((byte[]) body), reader);
+        }
+
+        if (body instanceof TokenBuffer) {
+            try (var p = ((TokenBuffer) body).asParser()) {
+                return reader.readValue(p);
+            } catch (IOException e) {
+                throw new BadStateException(e);
+            }
+        }
+
+        try (var in = (InputStream) body; var p = reader.createParser(in)) {
+            if (p.nextToken() == null) {
+                return null;
+            }
+            return reader.readValue(p);
         } catch (IOException e) {
-            throw getErrorHandler().onIOError(e, this);
-        } catch (InterruptedException e) {
             throw new BadStateException(e);
         }
+    }
 
-        this.response = resp;
-        int sc = resp.statusCode();
-        if (sc / 100 != 2) {
-            getErrorHandler().onErrorResponse(sc, this);
+    /**
+     * 2xx bodies are tokenized by {@link JsonTokenSubscriber} as they arrive, without blocking; other bodies are
+     * received as a stream for {@link JsonAPIErrorHandler}
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    protected HttpResponse.BodyHandler<Object> asyncBodyHandler() {
+        var mapper = getJackson().getMapper();
+        return info -> {
+            if (info.statusCode() / 100 == 2) {
+                return (HttpResponse.BodySubscriber<Object>) (Object) new JsonTokenSubscriber(mapper);
+            }
+            return (HttpResponse.BodySubscriber<Object>) (Object) HttpResponse.BodySubscribers.ofInputStream();
+        };
+    }
+
+    /**
+     * Any body is received as a stream, to be bound by {@link #toResult(HttpResponse, ObjectReader)} as it arrives
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    protected HttpResponse.BodyHandler<Object> streamingBodyHandler() {
+        return info -> (HttpResponse.BodySubscriber<Object>) (Object) HttpResponse.BodySubscribers.ofInputStream();
+    }
+
+    /**
+     * Binds the parsed tokens (and handles error responses, which may block to read the error body) on
+     * {@link JsonAPIConfig#getExecutor()}, or the common {@link ForkJoinPool} if not configured. The calling thread's
+     * context is attached
+     */
+    @Nonnull
+    protected <T> CompletableFuture<JsonAPIResult<T>> toResultAsync(
+            @Nonnull CompletableFuture<? extends HttpResponse<?>> future, @Nonnull ObjectReader reader) {
+        return thenApplyWithContext(future, resp -> toResult(resp, reader));
+    }
+
+    @Nonnull
+    protected <T> CompletableFuture<Flow.Publisher<T>> toPublisherAsync(@Nonnull String method, Object requestBody,
+            @Nonnull JavaType elementType) {
+        var mapper = getJackson().getMapper();
+
+        @SuppressWarnings("unchecked")
+        HttpResponse.BodyHandler<Object> handler = info -> {
+            if (info.statusCode() / 100 == 2) {
+                return (HttpResponse.BodySubscriber<Object>) (Object) new JsonElementPublisher<T>(mapper, elementType);
+            }
+            return (HttpResponse.BodySubscriber<Object>) (Object) HttpResponse.BodySubscribers.ofInputStream();
+        };
+
+        return thenApplyWithContext(doExecuteAsync(method, requestBody, handler), resp -> {
+            if (resp.statusCode() / 100 == 2) {
+                @SuppressWarnings("unchecked")
+                var r = (Flow.Publisher<T>) resp.body();
+                return r;
+            }
+
+            try (var errorBody = handleErrorResponse(resp); var in = errorBody.remaining()) {
+                return JsonElementPublisher.<T> of(mapper, elementType, in.readAllBytes());
+            } catch (IOException e) {
+                throw new BadStateException(e);
+            }
+        });
+    }
+
+    @Nonnull
+    protected <R, U> CompletableFuture<U> thenApplyWithContext(@Nonnull CompletableFuture<R> future,
+            @Nonnull Function<R, U> func) {
+        var ctx = ContextSnapshot.capture();
+        Function<R, U> f = r -> {
+            try (var scope = ctx.attach()) {
+                return func.apply(r);
+            }
+        };
+
+        var executor = getConfig().getExecutor();
+        return future.thenApplyAsync(f, (executor == null) ? ForkJoinPool.commonPool() : executor);
+    }
+
+    /**
+     * Serializes the body by the instance's own {@link #getJackson()} straight into bytes, with Jackson's recycled
+     * buffers, and publishes them with a fixed Content-Length; gzipped if reaching
+     * {@link JsonAPIConfig#getRequestCompressionThreshold()}
+     */
+    @Nonnull
+    protected HttpRequest buildRequest(@Nonnull String method, Object requestBody) {
+        return buildRequest(getUri(), method, requestBody);
+    }
+
+    @Nonnull
+    protected HttpRequest buildRequest(@Nonnull URI uri, @Nonnull String method, Object requestBody) {
+        requireNonNull(method);
+
+        var r = newRequest(uri);
+        if (requestBody == null) {
+            return requireNonNull(r.method(method, BodyPublishers.noBody()).build());
+        }
+
+        var bytes = serializeBody(requestBody);
+        int threshold = getConfig().getRequestCompressionThreshold();
+        if (threshold > 0 && bytes.length >= threshold) {
+            bytes = JsonAPICompression.gzip(bytes);
+            r.header("Content-Encoding", "gzip");
+        }
+        return requireNonNull(r.method(method, BodyPublishers.ofByteArray(bytes)).build());
+    }
+
+    /**
+     * {@link JsonAPIBody} is already serialized
+     */
+    @Nonnull
+    protected byte[] serializeBody(@Nonnull Object requestBody) {
+        if (requestBody instanceof JsonAPIBody) {
+            return ((JsonAPIBody) requestBody).getBytes();
         }
+        return getJackson().toBytes(requestBody);
+    }
 
-        return resp;
+    /**
+     * Doesn't block any thread while waiting for the response, nor between retries. Failures complete the future
+     * exceptionally, with the exception that {@link JsonAPIErrorHandler} throws or returns
+     */
+    @Nonnull
+    protected CompletableFuture<HttpResponse<Object>> doExecuteAsync(@Nonnull String method, Object requestBody) {
+        return doExecuteAsync(method, requestBody, asyncBodyHandler());
     }
 
     @Nonnull
-    protected HttpClient.Builder initClient() {
-        var cfg = getConfig();
+    protected <B> CompletableFuture<HttpResponse<B>> doExecuteAsync(@Nonnull String method, Object requestBody,
+            @Nonnull HttpResponse.BodyHandler<B> bodyHandler) {
+        return doExecuteAsync(getUri(), method, requestBody, bodyHandler);
+    }
 
-        var r = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(cfg.getConnectTimeoutSeconds()))
-                .followRedirects(cfg.getRedirect());
+    @Nonnull
+    protected <B> CompletableFuture<HttpResponse<B>> doExecuteAsync(@Nonnull URI uri, @Nonnull String method,
+            Object requestBody, @Nonnull HttpResponse.BodyHandler<B> bodyHandler) {
+        HttpRequest req;
+        try {
+            req = buildRequest(uri, method, requestBody);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return sendAsync(req, bodyHandler);
+    }
 
-        if (cfg.getProxy() != null) {
-            r.proxy(ProxySelector.of(cfg.getProxy()));
+    /**
+     * With {@link JsonAPIConfig#getEndpoints()}, each attempt (so a retry fails over) goes to an endpoint picked by
+     * {@link JsonAPIEndpoints#choose()}. Compressed bodies are decoded in front of the body handler
+     */
+    @Nonnull
+    protected <B> CompletableFuture<HttpResponse<B>> sendAsync(@Nonnull HttpRequest req,
+            @Nonnull HttpResponse.BodyHandler<B> handler) {
+        var bodyHandler = JsonAPICompression.decoding(handler);
+        var eps = getEndpoints();
+        Supplier<CompletableFuture<HttpResponse<B>>> send;
+        if (eps == null) {
+            send = () -> sendAttemptAsync(req, bodyHandler);
+        } else {
+            send = () -> {
+                var ep = eps.choose();
+                var epReq = withUri(req, toEndpointUri(req.uri(), ep));
+                return ep.execute(() -> sendAttemptAsync(epReq, bodyHandler));
+            };
+        }
+
+        var future = (getRetryer() == null) ? send.get() : getRetryer().execute(req.method(), send);
+
+        return future.handle((resp, ex) -> {
+            if (ex == null) {
+                return resp;
+            }
+            throw translateError(ex);
+        });
+    }
+
+    /**
+     * Moves the uri from {@link JsonAPIConfig#getEndpoint()} onto the endpoint
+     */
+    @Nonnull
+    protected URI toEndpointUri(@Nonnull URI uri, @Nonnull JsonAPIEndpoint ep) {
+        if (uri.equals(getUri())) {
+            return getEndpointUris().get(ep.getIndex());
+        }
+
+        var base = getConfig().getEndpoint().toString();
+        var text = uri.toString();
+        if (text.startsWith(base) == false) {
+            return uri;
+        }
+        return URI.create(ep.getUri().toString() + text.substring(base.length()));
+    }
+
+    /**
+     * A copy of the request, to another uri
+     */
+    @Nonnull
+    protected static HttpRequest withUri(@Nonnull HttpRequest req, @Nonnull URI uri) {
+        var r = HttpRequest.newBuilder(uri).method(req.method(), req.bodyPublisher().orElse(BodyPublishers.noBody()))
+                .expectContinue(req.expectContinue());
+        req.timeout().ifPresent(r::timeout);
+        req.version().ifPresent(r::version);
+        for (var h : req.headers().map().entrySet()) {
+            for (var value : h.getValue()) {
+                r.header(h.getKey(), value);
+            }
+        }
+        return requireNonNull(r.build());
+    }
+
+    /**
+     * How many more calls {@link JsonAPIConfig#getLimitPolicy()} would start or queue right now rather than reject,
+     * summed over the endpoints; {@link Integer#MAX_VALUE} if not limited
+     */
+    public int availablePermits() {
+        var limitPolicy = getConfig().getLimitPolicy();
+        if (limitPolicy == null) {
+            return Integer.MAX_VALUE;
+        }
+
+        var uris = getEndpointUris().isEmpty() ? List.of(getUri()) : getEndpointUris();
+        long r = 0;
+        for (var u : uris) {
+            r += JsonAPILimiter.of(limitPolicy, u).getAvailable();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, r);
+    }
+
+    /**
+     * One attempt to req.uri(), subject to {@link JsonAPIConfig#getCircuitBreakerPolicy()} then to
+     * {@link JsonAPIConfig#getLimitPolicy()} of that endpoint, so short-circuited calls never wait in the limiter
+     * queue. The breaker times the call only from when the limiter starts it, so that local queuing doesn't count as
+     * slow.
+     */
+    @Nonnull
+    protected <B> CompletableFuture<HttpResponse<B>> sendAttemptAsync(@Nonnull HttpRequest req,
+            @Nonnull HttpResponse.BodyHandler<B> bodyHandler) {
+        Function<Runnable, CompletableFuture<HttpResponse<B>>> direct = started -> {
+            started.run();
+            return getClient().sendAsync(req, bodyHandler);
+        };
+
+        var limitPolicy = getConfig().getLimitPolicy();
+        Function<Runnable, CompletableFuture<HttpResponse<B>>> limited;
+        if (limitPolicy == null) {
+            limited = direct;
+        } else {
+            var limiter = JsonAPILimiter.of(limitPolicy, req.uri());
+            limited = started -> limiter.execute(() -> direct.apply(started));
+        }
+
+        var breakerPolicy = getConfig().getCircuitBreakerPolicy();
+        if (breakerPolicy == null) {
+            return limited.apply(() -> {
+            });
+        }
+
+        var breaker = JsonAPICircuitBreaker.of(breakerPolicy, req.uri());
+        return breaker.execute(limited, () -> getErrorHandler().onCircuitOpen(breaker, this));
+    }
+
+    @Nonnull
+    protected RuntimeException translateError(@Nonnull Throwable ex) {
+        var cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+        if (cause instanceof IOException) {
+            return getErrorHandler().onIOError((IOException) cause, this);
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new BadStateException(cause);
+    }
+
+    /**
+     * Acquires the shared client, released by {@link #close()}
+     */
+    @Nonnull
+    protected HttpClient initClient() {
+        this.clientKey = new JsonAPIClients.Key(getConfig());
+        return JsonAPIClients.acquire(this.clientKey);
+    }
+
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true) && this.clientKey != null) {
+            JsonAPIClients.release(this.clientKey);
         }
-        return requireNonNull(r);
     }
 
 }
@@ -0,0 +1,80 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.List;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Picks the endpoint of each attempt among the endpoints of {@link JsonAPIConfig#getEndpoints()} that aren't ejected,
+ * see {@link JsonAPIEndpoints}
+ */
+@FunctionalInterface
+public interface JsonAPIBalancer {
+
+    @Nonnull
+    public static final JsonAPIBalancer ROUND_ROBIN = (candidates, sequence) -> candidates
+            .get((int) Long.remainderUnsigned(sequence, candidates.size()));
+
+    /** the fewest requests in flight, ties taken in turn */
+    @Nonnull
+    public static final JsonAPIBalancer LEAST_OUTSTANDING = (candidates, sequence) -> pickMin(candidates, sequence,
+            ep -> ep.getOutstanding().get());
+
+    /**
+     * The lowest EWMA latency weighted by the requests in flight; endpoints without latency samples yet come first
+     */
+    @Nonnull
+    public static final JsonAPIBalancer EWMA = (candidates, sequence) -> pickMin(candidates, sequence,
+            ep -> ep.getEwmaMillis() * (ep.getOutstanding().get() + 1));
+
+    @FunctionalInterface
+    interface Score {
+
+        double of(@Nonnull JsonAPIEndpoint endpoint);
+
+    }
+
+    /**
+     * @param candidates
+     *            not empty
+     * @param sequence
+     *            increases by each call, for rotation
+     */
+    @Nonnull
+    JsonAPIEndpoint choose(@Nonnull List<JsonAPIEndpoint> candidates, long sequence);
+
+    @Nonnull
+    static JsonAPIEndpoint pickMin(@Nonnull List<JsonAPIEndpoint> candidates, long sequence, @Nonnull Score score) {
+        int size = candidates.size();
+        int start = (int) Long.remainderUnsigned(sequence, size);
+
+        JsonAPIEndpoint r = null;
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            var ep = candidates.get((start + i) % size);
+            var s = score.of(ep);
+            if (r == null || s < min) {
+                r = ep;
+                min = s;
+            }
+        }
+        return r;
+    }
+
+}
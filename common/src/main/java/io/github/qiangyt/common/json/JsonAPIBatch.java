@@ -0,0 +1,281 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import io.github.qiangyt.common.err.BadStateException;
+import io.github.qiangyt.common.err.BadValueException;
+import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Runs the requests of {@link JsonAPI#executeAll(List, int, boolean, Class)} through the full {@link JsonAPI} pipeline
+ * (limits, breaker, retries etc. included), and hands the items back as they complete, or in input order.
+ *
+ * At most parallelism items are outstanding, i.e. in flight or completed but not yet taken, so a slow consumer slows
+ * the batch down rather than buffering its results; in input order, a slow item also holds back the ones after it. A
+ * failed item (e.g. thrown by {@link JsonAPIErrorHandler}) doesn't stop the batch.
+ *
+ * The iterator blocks while waiting, and is for a single consumer.
+ */
+@Getter
+public class JsonAPIBatch<T> implements Iterator<JsonAPIBatch.Item<T>> {
+
+    static final Logger LOG = LoggerFactory.getLogger(JsonAPIBatch.class);
+
+    @Getter
+    public static class Item<T> {
+
+        final int index;
+
+        @Nonnull
+        final JsonAPIRequest request;
+
+        /** null if failed */
+        final JsonAPIResult<T> result;
+
+        /** null if succeeded */
+        final RuntimeException error;
+
+        public Item(int index, @Nonnull JsonAPIRequest request, JsonAPIResult<T> result, RuntimeException error) {
+            this.index = index;
+            this.request = request;
+            this.result = result;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return this.error == null;
+        }
+
+        /**
+         * @throws RuntimeException
+         *             the error if failed
+         */
+        public T getBody() {
+            if (this.error != null) {
+                throw this.error;
+            }
+            return this.result.getBody();
+        }
+
+    }
+
+    @Getter(AccessLevel.NONE)
+    @Nonnull
+    final JsonAPI api;
+
+    @Nonnull
+    final List<JsonAPIRequest> requests;
+
+    @Getter(AccessLevel.NONE)
+    @Nonnull
+    final ObjectReader reader;
+
+    final int parallelism;
+
+    final boolean ordered;
+
+    /** called on the completing thread after each item, may be null */
+    @Getter(AccessLevel.NONE)
+    final Consumer<JsonAPIBatch<T>> progressListener;
+
+    final long startedAt = System.nanoTime();
+
+    final AtomicInteger completed = new AtomicInteger();
+
+    final AtomicInteger failed = new AtomicInteger();
+
+    @Getter(AccessLevel.NONE)
+    final Object startLock = new Object();
+
+    // below are guarded by this
+
+    @Getter(AccessLevel.NONE)
+    int started;
+
+    @Getter(AccessLevel.NONE)
+    int taken;
+
+    /** completed but not taken, by index if ordered */
+    @Getter(AccessLevel.NONE)
+    final Map<Integer, Item<T>> ready = new HashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    final ArrayDeque<Item<T>> readyQueue = new ArrayDeque<>();
+
+    JsonAPIBatch(@Nonnull JsonAPI api, @Nonnull List<JsonAPIRequest> requests, @Nonnull ObjectReader reader,
+            int parallelism, boolean ordered, Consumer<JsonAPIBatch<T>> progressListener) {
+        if (parallelism <= 0) {
+            throw new BadValueException("parallelism should be positive: %d", parallelism);
+        }
+
+        this.api = api;
+        this.requests = List.copyOf(requests);
+        this.reader = reader;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.progressListener = progressListener;
+    }
+
+    public int getTotal() {
+        return this.requests.size();
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startedAt);
+    }
+
+    /**
+     * completed items per second
+     */
+    public double getThroughput() {
+        long elapsed = System.nanoTime() - this.startedAt;
+        return (elapsed <= 0) ? 0 : this.completed.get() * 1e9 / elapsed;
+    }
+
+    /**
+     * Fills the window, but no more than {@link JsonAPI#availablePermits()}, so that the items aren't rejected by the
+     * limiter; at least one is started if none of this batch is in flight, so that the batch always progresses
+     */
+    void startMore() {
+        // so that concurrent callers don't count the same permits
+        synchronized (this.startLock) {
+            int available = this.api.availablePermits();
+
+            int from;
+            int to;
+            synchronized (this) {
+                from = this.started;
+                to = Math.min(getTotal(), this.taken + this.parallelism);
+
+                int inFlight = from - this.completed.get();
+                int allowed = (inFlight > 0) ? available : Math.max(1, available);
+                to = (int) Math.min(to, (long) from + allowed);
+                if (to <= from) {
+                    return;
+                }
+                this.started = to;
+            }
+
+            for (int i = from; i < to; i++) {
+                start(i);
+            }
+        }
+    }
+
+    void start(int index) {
+        var req = this.requests.get(index);
+        try {
+            this.api.<T> exchangeAsync(this.api.resolve(req.getPath()), req.getMethod(), req.getBody(), this.reader)
+                    .whenComplete((result, ex) -> onItemDone(new Item<>(index, req, result, toError(ex))));
+        } catch (RuntimeException e) {
+            onItemDone(new Item<>(index, req, null, e));
+        }
+    }
+
+    static RuntimeException toError(Throwable ex) {
+        if (ex == null) {
+            return null;
+        }
+        var cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+        return (cause instanceof RuntimeException) ? (RuntimeException) cause : new BadStateException(cause);
+    }
+
+    void onItemDone(@Nonnull Item<T> item) {
+        this.completed.incrementAndGet();
+        if (item.isSuccess() == false) {
+            this.failed.incrementAndGet();
+        }
+
+        // before the item is handed over, so that the progress is never behind the consumer
+        if (this.progressListener != null) {
+            try {
+                this.progressListener.accept(this);
+            } catch (RuntimeException e) {
+                // the item is still handed over, else the consumer waits forever
+                LOG.warn("progress listener failed", e);
+            }
+        }
+
+        synchronized (this) {
+            if (this.ordered) {
+                this.ready.put(item.getIndex(), item);
+            } else {
+                this.readyQueue.add(item);
+            }
+            notifyAll();
+        }
+
+        // the permit of this item is released, so more may fit
+        startMore();
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return this.taken < getTotal();
+    }
+
+    @Override
+    public Item<T> next() {
+        Item<T> r;
+        synchronized (this) {
+            if (this.taken >= getTotal()) {
+                throw new NoSuchElementException();
+            }
+
+            while ((r = this.ordered ? this.ready.remove(this.taken) : this.readyQueue.poll()) == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BadStateException(e);
+                }
+            }
+            this.taken++;
+        }
+
+        startMore();
+        return r;
+    }
+
+    @Nonnull
+    public Stream<Item<T>> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(this, getTotal(), Spliterator.ORDERED), false);
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import io.github.qiangyt.common.bean.BeanContainer;
+import io.github.qiangyt.common.bean.WrapperBean;
+import jakarta.annotation.Nonnull;
+
+/**
+ * Releases the shared http client of the {@link JsonAPI} when the container is destroyed
+ */
+public class JsonAPIBean extends WrapperBean<JsonAPI> {
+
+    public JsonAPIBean(String name, @Nonnull BeanContainer container, @Nonnull JsonAPI instance) {
+        super(name, container, instance);
+    }
+
+    @Override
+    public void doDestroy() throws Exception {
+        getInstance().close();
+    }
+
+}
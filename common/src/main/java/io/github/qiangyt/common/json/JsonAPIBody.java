@@ -0,0 +1,52 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.github.qiangyt.common.err.BadStateException;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * A request body already serialized to JSON, sent by {@link JsonAPI} as is
+ */
+@Getter
+public final class JsonAPIBody {
+
+    @Nonnull
+    final byte[] bytes;
+
+    public JsonAPIBody(@Nonnull byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Serializes by a pre-built writer, e.g. one bound to the declared type of the value
+     */
+    @Nonnull
+    public static JsonAPIBody of(@Nonnull ObjectWriter writer, Object value) {
+        try {
+            return new JsonAPIBody(writer.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new BadStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Opt-in client-side cache of GET responses for {@link JsonAPI}, set by
+ * {@link JsonAPIConfig#setResponseCache( JsonAPICache)} and shareable by several configs. Honors Cache-Control
+ * (no-store, no-cache, max-age) and Expires, revalidates stale entries with If-None-Match/If-Modified-Since, and evicts
+ * the least recently used entries beyond the size limit (counted in body bytes).
+ *
+ * With cacheDeserialized, the deserialized body is also cached, per target type, so a fresh hit or a 304 skips parsing
+ * entirely; the cached object is then shared by all callers, which must not modify it.
+ */
+@Getter
+public class JsonAPICache {
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    @Getter
+    public static class Key {
+
+        @Nonnull
+        final URI uri;
+
+        @Nonnull
+        final Map<String, String> headers;
+
+        public Key(@Nonnull URI uri, @Nonnull Map<String, String> headers) {
+            this.uri = uri;
+            this.headers = headers;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key == false) {
+                return false;
+            }
+
+            var that = (Key) obj;
+            return this.uri.equals(that.uri) && this.headers.equals(that.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.uri, this.headers);
+        }
+
+    }
+
+    @Getter
+    public static class Entry {
+
+        @Nonnull
+        final HttpHeaders headers;
+
+        @Nonnull
+        final byte[] body;
+
+        /** System.currentTimeMillis() after which revalidation is required */
+        final long expiresAt;
+
+        /** deserialized bodies by type, only if cacheDeserialized */
+        @Nonnull
+        final Map<JavaType, Object> values;
+
+        Entry(@Nonnull HttpHeaders headers, @Nonnull byte[] body, long expiresAt,
+                @Nonnull Map<JavaType, Object> values) {
+            this.headers = headers;
+            this.body = body;
+            this.expiresAt = expiresAt;
+            this.values = values;
+        }
+
+        public boolean isFresh(long now) {
+            return now < this.expiresAt;
+        }
+
+        public String getETag() {
+            return this.headers.firstValue("ETag").orElse(null);
+        }
+
+        public String getLastModified() {
+            return this.headers.firstValue("Last-Modified").orElse(null);
+        }
+
+        public boolean isRevalidatable() {
+            return getETag() != null || getLastModified() != null;
+        }
+
+    }
+
+    final boolean cacheDeserialized;
+
+    final Cache<Key, Entry> entries;
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    final AtomicLong revalidations = new AtomicLong();
+
+    public JsonAPICache() {
+        this(DEFAULT_MAX_BYTES, false);
+    }
+
+    public JsonAPICache(long maxBytes, boolean cacheDeserialized) {
+        this.cacheDeserialized = cacheDeserialized;
+        this.entries = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher((Key k, Entry v) -> v.body.length + 256).build();
+    }
+
+    public Entry get(@Nonnull Key key) {
+        return this.entries.getIfPresent(key);
+    }
+
+    /**
+     * Stores a 200 response, if its headers allow
+     *
+     * @return the stored entry, null if not cacheable
+     */
+    public Entry put(@Nonnull Key key, @Nonnull HttpHeaders headers, @Nonnull byte[] body) {
+        long expiresAt = expiresAt(headers, System.currentTimeMillis());
+        if (expiresAt == Long.MIN_VALUE) {
+            this.entries.invalidate(key);
+            return null;
+        }
+
+        var r = new Entry(headers, body, expiresAt, new ConcurrentHashMap<>());
+        if (r.isFresh(System.currentTimeMillis()) == false && r.isRevalidatable() == false) {
+            // useless: neither fresh nor revalidatable
+            this.entries.invalidate(key);
+            return null;
+        }
+
+        this.entries.put(key, r);
+        return r;
+    }
+
+    /**
+     * Refreshes an entry by a 304 response, keeping its body and deserialized values
+     */
+    @Nonnull
+    public Entry revalidated(@Nonnull Key key, @Nonnull Entry entry, @Nonnull HttpHeaders notModifiedHeaders) {
+        this.revalidations.incrementAndGet();
+
+        long expiresAt = expiresAt(notModifiedHeaders, System.currentTimeMillis());
+        if (expiresAt == Long.MIN_VALUE) {
+            this.entries.invalidate(key);
+            return entry;
+        }
+
+        var r = new Entry(entry.headers, entry.body, expiresAt, entry.values);
+        this.entries.put(key, r);
+        return r;
+    }
+
+    /**
+     * @return Long.MIN_VALUE if not storable, a past time if it must be revalidated before each use
+     */
+    static long expiresAt(@Nonnull HttpHeaders headers, long now) {
+        if (headers.allValues("Vary").contains("*")) {
+            return Long.MIN_VALUE;
+        }
+
+        long maxAge = -1;
+        for (var value : headers.allValues("Cache-Control")) {
+            for (var d : value.split(",")) {
+                var directive = d.trim().toLowerCase();
+                if (directive.equals("no-store")) {
+                    return Long.MIN_VALUE;
+                }
+                if (directive.equals("no-cache")) {
+                    return 0;
+                }
+                if (directive.startsWith("max-age=")) {
+                    maxAge = parseLong(directive.substring("max-age=".length()), 0);
+                }
+            }
+        }
+
+        if (maxAge >= 0) {
+            long age = parseLong(headers.firstValue("Age").orElse("0"), 0);
+            return now + (maxAge - age) * 1000;
+        }
+
+        var expires = parseDate(headers.allValues("Expires"));
+        if (expires != Long.MIN_VALUE) {
+            var date = parseDate(headers.allValues("Date"));
+            return now + (expires - ((date == Long.MIN_VALUE) ? now : date));
+        }
+
+        return 0;
+    }
+
+    static long parseLong(@Nonnull String text, long defaultValue) {
+        try {
+            return Long.parseLong(text.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    static long parseDate(@Nonnull List<String> values) {
+        if (values.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return ZonedDateTime.parse(values.get(0), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // invalid dates, e.g. "0", mean already expired
+            return 0;
+        }
+    }
+
+}
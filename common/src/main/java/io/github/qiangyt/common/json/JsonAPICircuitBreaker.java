@@ -0,0 +1,281 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Runtime state of a {@link JsonAPICircuitBreakerPolicy} for one endpoint. CLOSED lets all calls through and records
+ * their outcomes in a count-based sliding window; when the failure or slow call rate reaches its threshold it turns
+ * OPEN, and short-circuits calls without sending anything for {@link JsonAPICircuitBreakerPolicy#getOpenMillis()}; then
+ * HALF_OPEN lets a few probe calls through, which close or reopen it.
+ *
+ * Shared by all {@link JsonAPI}s with the same policy instance, see {@link #of(JsonAPICircuitBreakerPolicy, URI)}
+ */
+@Getter
+public class JsonAPICircuitBreaker {
+
+    /** weak keys, compared by identity: breakers go away with their policy */
+    static final Cache<JsonAPICircuitBreakerPolicy, Map<String, JsonAPICircuitBreaker>> BREAKERS = CacheBuilder
+            .newBuilder().weakKeys().build();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    static final byte OUTCOME_FAILED = 1;
+
+    static final byte OUTCOME_SLOW = 2;
+
+    @Nonnull
+    final JsonAPICircuitBreakerPolicy policy;
+
+    @Nonnull
+    final String endpoint;
+
+    /** calls failed without being sent */
+    final AtomicLong notPermitted = new AtomicLong();
+
+    /** transitions to OPEN */
+    final AtomicLong opened = new AtomicLong();
+
+    // below are guarded by this
+
+    @Getter(AccessLevel.NONE)
+    State state = State.CLOSED;
+
+    /** bumped by each transition, outcomes of calls permitted in an earlier state are ignored */
+    @Getter(AccessLevel.NONE)
+    long generation;
+
+    /** ring of outcome bits of CLOSED calls */
+    @Getter(AccessLevel.NONE)
+    final byte[] window;
+
+    @Getter(AccessLevel.NONE)
+    int next;
+
+    @Getter(AccessLevel.NONE)
+    int count;
+
+    @Getter(AccessLevel.NONE)
+    int failures;
+
+    @Getter(AccessLevel.NONE)
+    int slowCalls;
+
+    @Getter(AccessLevel.NONE)
+    long openUntil;
+
+    @Getter(AccessLevel.NONE)
+    int probesStarted;
+
+    @Getter(AccessLevel.NONE)
+    int probesSucceeded;
+
+    public JsonAPICircuitBreaker(@Nonnull JsonAPICircuitBreakerPolicy policy, @Nonnull String endpoint) {
+        this.policy = policy;
+        this.endpoint = endpoint;
+        this.window = new byte[Math.max(1, policy.getWindowSize())];
+    }
+
+    @Nonnull
+    public static JsonAPICircuitBreaker of(@Nonnull JsonAPICircuitBreakerPolicy policy, @Nonnull URI uri) {
+        var byEndpoint = BREAKERS.asMap().computeIfAbsent(policy, p -> new ConcurrentHashMap<>());
+        return byEndpoint.computeIfAbsent(JsonAPIConfig.endpointOf(uri), ep -> new JsonAPICircuitBreaker(policy, ep));
+    }
+
+    /**
+     * OPEN turns HALF_OPEN here once its time is over, as seen by the next call
+     */
+    @Nonnull
+    public synchronized State getState() {
+        if (this.state == State.OPEN && System.currentTimeMillis() >= this.openUntil) {
+            transit(State.HALF_OPEN);
+        }
+        return this.state;
+    }
+
+    public synchronized double getFailureRate() {
+        return (this.count == 0) ? 0 : (double) this.failures / this.count;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return (this.count == 0) ? 0 : (double) this.slowCalls / this.count;
+    }
+
+    /**
+     * Fails the call with the exception of rejected, without sending it, if not permitted
+     */
+    @Nonnull
+    public <B> CompletableFuture<HttpResponse<B>> execute(@Nonnull Supplier<CompletableFuture<HttpResponse<B>>> call,
+            @Nonnull Supplier<RuntimeException> rejected) {
+        return execute(started -> {
+            started.run();
+            return call.get();
+        }, rejected);
+    }
+
+    /**
+     * @param call
+     *            given a callback to run right before the request is actually sent, e.g. once let go by a
+     *            {@link JsonAPILimiter}, so that the wait before it doesn't count as latency
+     */
+    @Nonnull
+    public <B> CompletableFuture<HttpResponse<B>> execute(
+            @Nonnull Function<Runnable, CompletableFuture<HttpResponse<B>>> call,
+            @Nonnull Supplier<RuntimeException> rejected) {
+        long permit = tryAcquire();
+        if (permit < 0) {
+            this.notPermitted.incrementAndGet();
+            return CompletableFuture.failedFuture(rejected.get());
+        }
+
+        var begin = new AtomicLong();
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = call.apply(() -> begin.set(System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            onComplete(permit, 0, null);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return future.whenComplete((resp, ex) -> {
+            Boolean failed;
+            if (ex == null) {
+                failed = getPolicy().getFailureStatuses().contains(resp.statusCode());
+            } else {
+                var cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                // other errors, e.g. rejected by a limiter, are not the endpoint's
+                failed = (cause instanceof IOException) ? Boolean.TRUE : null;
+            }
+            // never started if, e.g., rejected by a limiter, which says nothing about the endpoint anyway
+            long b = begin.get();
+            onComplete(permit, (b == 0) ? 0 : System.currentTimeMillis() - b, failed);
+        });
+    }
+
+    /**
+     * @return the generation to report the outcome to, -1 if not permitted
+     */
+    synchronized long tryAcquire() {
+        switch (getState()) {
+        case CLOSED:
+            return this.generation;
+        case HALF_OPEN:
+            if (this.probesStarted < getPolicy().getHalfOpenProbes()) {
+                this.probesStarted++;
+                return this.generation;
+            }
+            return -1;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * @param failed
+     *            null if the outcome says nothing about the endpoint
+     */
+    synchronized void onComplete(long permit, long latencyMillis, Boolean failed) {
+        if (permit != this.generation) {
+            return;
+        }
+
+        var p = getPolicy();
+        if (this.state == State.HALF_OPEN) {
+            if (failed == null) {
+                this.probesStarted--;
+            } else if (failed) {
+                transit(State.OPEN);
+            } else if (++this.probesSucceeded >= p.getHalfOpenProbes()) {
+                transit(State.CLOSED);
+            }
+            return;
+        }
+
+        if (failed == null) {
+            return;
+        }
+
+        byte outcome = 0;
+        if (failed) {
+            outcome |= OUTCOME_FAILED;
+        }
+        if (p.getSlowCallMillis() > 0 && latencyMillis >= p.getSlowCallMillis()) {
+            outcome |= OUTCOME_SLOW;
+        }
+        record(outcome);
+
+        if (this.count >= Math.min(p.getMinCalls(), this.window.length)
+                && (getFailureRate() >= p.getFailureRateThreshold()
+                        || (p.getSlowCallMillis() > 0 && getSlowCallRate() >= p.getSlowCallRateThreshold()))) {
+            transit(State.OPEN);
+        }
+    }
+
+    /** under lock */
+    void record(byte outcome) {
+        if (this.count == this.window.length) {
+            var evicted = this.window[this.next];
+            this.failures -= evicted & OUTCOME_FAILED;
+            this.slowCalls -= (evicted & OUTCOME_SLOW) >> 1;
+        } else {
+            this.count++;
+        }
+
+        this.window[this.next] = outcome;
+        this.next = (this.next + 1) % this.window.length;
+        this.failures += outcome & OUTCOME_FAILED;
+        this.slowCalls += (outcome & OUTCOME_SLOW) >> 1;
+    }
+
+    /** under lock */
+    void transit(@Nonnull State to) {
+        this.state = to;
+        this.generation++;
+        this.probesStarted = 0;
+        this.probesSucceeded = 0;
+
+        if (to == State.OPEN) {
+            this.opened.incrementAndGet();
+            this.openUntil = System.currentTimeMillis() + getPolicy().getOpenMillis();
+        } else if (to == State.CLOSED) {
+            this.next = 0;
+            this.count = 0;
+            this.failures = 0;
+            this.slowCalls = 0;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.Set;
+
+import io.github.qiangyt.common.bean.Dumpable;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Per-endpoint circuit breaker settings of {@link JsonAPIConfig}, enforced by {@link JsonAPICircuitBreaker}
+ */
+@Getter
+@Setter
+public class JsonAPICircuitBreakerPolicy implements Dumpable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    public static final int DEFAULT_MIN_CALLS = 20;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8;
+    public static final long DEFAULT_OPEN_MILLIS = 10_000;
+    public static final int DEFAULT_HALF_OPEN_PROBES = 5;
+
+    @Nonnull
+    public static final Set<Integer> DEFAULT_FAILURE_STATUSES = Set.of(500, 502, 503, 504);
+
+    /** the failure and slow call rates are of the most recent so many calls */
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    /** the rates aren't evaluated before so many calls are in the window */
+    private int minCalls = DEFAULT_MIN_CALLS;
+
+    /** opens when reached */
+    private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+    /** calls slower than this are slow calls, 0 means to ignore latency */
+    private long slowCallMillis;
+
+    /** opens when reached */
+    private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+    /** calls are short-circuited so long, then some probe calls are let through (half-open) */
+    private long openMillis = DEFAULT_OPEN_MILLIS;
+
+    /** closes when so many probe calls succeeded, opens again on the first failed one */
+    private int halfOpenProbes = DEFAULT_HALF_OPEN_PROBES;
+
+    /** responses counted as failures, besides io errors */
+    @Nonnull
+    private Set<Integer> failureStatuses = DEFAULT_FAILURE_STATUSES;
+
+}
@@ -0,0 +1,371 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.github.qiangyt.common.err.BadStateException;
+import io.github.qiangyt.common.err.BadValueException;
+import io.github.qiangyt.common.misc.StringHelper;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Implements an annotated interface by a {@link JsonAPI}:
+ *
+ * <pre>
+ * interface UserAPI {
+ *     &#64;JsonAPIClient.Call(method = "GET", path = "/users/{id}")
+ *     CompletableFuture&lt;User&gt; get(&#64;JsonAPIClient.Path("id") long id, &#64;JsonAPIClient.Query("q") String q);
+ *
+ *     &#64;JsonAPIClient.Call(method = "POST", path = "/users")
+ *     JsonAPIResult&lt;User&gt; create(&#64;JsonAPIClient.Body User user);
+ * }
+ *
+ * var users = JsonAPIClient.create(UserAPI.class, new JsonAPI(config, "/v1"));
+ * </pre>
+ *
+ * A method returns the response body, {@link JsonAPIResult}, or a {@link CompletableFuture} of either, or void. The
+ * path template, the query parameters, and the {@link ObjectReader}/{@link ObjectWriter} of each method are compiled
+ * once by {@link #create(Class, JsonAPI)}, so a call only fills in the arguments. Synchronous methods bind the body as
+ * it streams in, like {@link JsonAPI#exchange(String, Object, Class)}. Default methods are invoked as is.
+ */
+public final class JsonAPIClient {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    public @interface Call {
+
+        String method() default "GET";
+
+        /** appended to {@link JsonAPI#getUri()}, with {name} placeholders of {@link Path} parameters */
+        String path() default "";
+
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface Path {
+
+        String value();
+
+    }
+
+    /** null values are omitted, collection values are repeated */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface Query {
+
+        String value();
+
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface Body {
+
+    }
+
+    JsonAPIClient() {
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    public static <T> T create(@Nonnull Class<T> iface, @Nonnull JsonAPI api) {
+        if (iface.isInterface() == false) {
+            throw new BadValueException("%s is not an interface", iface.getName());
+        }
+
+        var invokers = new HashMap<Method, Invoker>();
+        var defaults = new HashMap<Method, MethodHandle>();
+        for (var m : iface.getMethods()) {
+            if (m.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            if (m.isDefault()) {
+                defaults.put(m, unreflectDefault(m));
+            } else {
+                invokers.put(m, new Invoker(api, m));
+            }
+        }
+
+        // bound to the proxy once it exists, before any call; concurrent for safe publication
+        var boundDefaults = new ConcurrentHashMap<Method, MethodHandle>();
+
+        InvocationHandler handler = (proxy, m, args) -> {
+            var invoker = invokers.get(m);
+            if (invoker != null) {
+                return invoker.invoke(args);
+            }
+            var defaultMethod = boundDefaults.get(m);
+            if (defaultMethod != null) {
+                return defaultMethod.invokeWithArguments(args);
+            }
+
+            switch (m.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "JsonAPIClient(" + iface.getName() + ", " + api.getUri() + ")";
+            default:
+                throw new BadValueException("unsupported method: %s", m);
+            }
+        };
+
+        var r = (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] { iface }, handler);
+        defaults.forEach((m, h) -> boundDefaults.put(m, h.bindTo(r)));
+        return r;
+    }
+
+    @Nonnull
+    static MethodHandle unreflectDefault(@Nonnull Method m) {
+        var declaring = m.getDeclaringClass();
+        try {
+            return MethodHandles.privateLookupIn(declaring, MethodHandles.lookup()).unreflectSpecial(m, declaring);
+        } catch (IllegalAccessException e) {
+            throw new BadStateException(e);
+        }
+    }
+
+    enum Kind {
+        BODY, RESULT, ASYNC_BODY, ASYNC_RESULT, ASYNC_VOID, VOID
+    }
+
+    /**
+     * Compiled form of an interface method
+     */
+    @Getter
+    static class Invoker {
+
+        @Nonnull
+        final JsonAPI api;
+
+        @Nonnull
+        final String httpMethod;
+
+        /** literal segments (String) and indexes of {@link Path} arguments (Integer), in order */
+        @Nonnull
+        final Object[] pathParts;
+
+        @Nonnull
+        final String[] queryNames;
+
+        @Nonnull
+        final int[] queryArgs;
+
+        /** -1 if none */
+        final int bodyArg;
+
+        /** null if no body */
+        final ObjectWriter writer;
+
+        @Nonnull
+        final ObjectReader reader;
+
+        @Nonnull
+        final Kind kind;
+
+        Invoker(@Nonnull JsonAPI api, @Nonnull Method m) {
+            this.api = api;
+
+            var call = m.getAnnotation(Call.class);
+            if (call == null) {
+                throw new BadValueException("%s: missing @%s", m, Call.class.getName());
+            }
+            this.httpMethod = call.method();
+
+            var pathArgs = new HashMap<String, Integer>();
+            var queryNames = new ArrayList<String>();
+            var queryArgs = new ArrayList<Integer>();
+            int bodyArg = -1;
+
+            var params = m.getParameters();
+            for (int i = 0; i < params.length; i++) {
+                var p = params[i];
+                if (p.isAnnotationPresent(Path.class)) {
+                    pathArgs.put(p.getAnnotation(Path.class).value(), i);
+                } else if (p.isAnnotationPresent(Query.class)) {
+                    queryNames.add(p.getAnnotation(Query.class).value());
+                    queryArgs.add(i);
+                } else if (p.isAnnotationPresent(Body.class) && bodyArg < 0) {
+                    bodyArg = i;
+                } else {
+                    throw new BadValueException("%s: parameter %d needs one of @Path, @Query or a single @Body", m, i);
+                }
+            }
+
+            this.pathParts = compilePath(m, call.path(), pathArgs);
+            this.queryNames = queryNames.toArray(new String[0]);
+            this.queryArgs = queryArgs.stream().mapToInt(Integer::intValue).toArray();
+            this.bodyArg = bodyArg;
+
+            var mapper = api.getJackson().getMapper();
+            var typeFactory = mapper.getTypeFactory();
+            this.writer = (bodyArg < 0) ? null
+                    : mapper.writerFor(typeFactory.constructType(m.getGenericParameterTypes()[bodyArg]));
+
+            Type t = m.getGenericReturnType();
+            boolean async = false;
+            if (rawClass(t) == CompletableFuture.class) {
+                async = true;
+                t = typeArgument(m, t);
+            }
+            boolean result = false;
+            if (rawClass(t) == JsonAPIResult.class) {
+                result = true;
+                t = typeArgument(m, t);
+            }
+
+            if (t == void.class || t == Void.class) {
+                this.kind = async ? (result ? Kind.ASYNC_RESULT : Kind.ASYNC_VOID) : (result ? Kind.RESULT : Kind.VOID);
+                this.reader = api.readerFor(mapper.constructType(JsonNode.class));
+            } else {
+                this.kind = async ? (result ? Kind.ASYNC_RESULT : Kind.ASYNC_BODY) : (result ? Kind.RESULT : Kind.BODY);
+                this.reader = api.readerFor(typeFactory.constructType(t));
+            }
+        }
+
+        static Class<?> rawClass(@Nonnull Type t) {
+            if (t instanceof Class) {
+                return (Class<?>) t;
+            }
+            if (t instanceof ParameterizedType) {
+                return (Class<?>) ((ParameterizedType) t).getRawType();
+            }
+            return null;
+        }
+
+        @Nonnull
+        static Type typeArgument(@Nonnull Method m, @Nonnull Type t) {
+            if (t instanceof ParameterizedType == false) {
+                throw new BadValueException("%s: missing type argument of %s", m, t);
+            }
+            return ((ParameterizedType) t).getActualTypeArguments()[0];
+        }
+
+        @Nonnull
+        static Object[] compilePath(@Nonnull Method m, @Nonnull String template,
+                @Nonnull Map<String, Integer> pathArgs) {
+            var parts = new ArrayList<Object>();
+            int i = 0;
+            while (i < template.length()) {
+                int begin = template.indexOf('{', i);
+                if (begin < 0) {
+                    parts.add(template.substring(i));
+                    break;
+                }
+                int end = template.indexOf('}', begin);
+                if (end < 0) {
+                    throw new BadValueException("%s: unterminated placeholder in %s", m, template);
+                }
+
+                if (begin > i) {
+                    parts.add(template.substring(i, begin));
+                }
+                var name = template.substring(begin + 1, end);
+                var arg = pathArgs.get(name);
+                if (arg == null) {
+                    throw new BadValueException("%s: no @Path(\"%s\") parameter", m, name);
+                }
+                parts.add(arg);
+                i = end + 1;
+            }
+            return parts.toArray();
+        }
+
+        @Nonnull
+        String buildPath(Object[] args) {
+            var r = new StringBuilder();
+            for (var part : this.pathParts) {
+                if (part instanceof String) {
+                    r.append((String) part);
+                } else {
+                    var value = args[(Integer) part];
+                    if (value == null) {
+                        throw new BadValueException("path parameter %d is null", part);
+                    }
+                    r.append(StringHelper.urlEncode(value));
+                }
+            }
+
+            char sep = (r.indexOf("?") < 0) ? '?' : '&';
+            for (int i = 0; i < this.queryArgs.length; i++) {
+                var value = args[this.queryArgs[i]];
+                if (value == null) {
+                    continue;
+                }
+                var values = (value instanceof Collection) ? (Collection<?>) value : List.of(value);
+                for (var v : values) {
+                    r.append(sep).append(StringHelper.urlEncode(this.queryNames[i])).append('=')
+                            .append(StringHelper.urlEncode(v));
+                    sep = '&';
+                }
+            }
+            return r.toString();
+        }
+
+        Object invoke(Object[] args) {
+            var uri = getApi().resolve(buildPath(args));
+            Object body = null;
+            if (this.bodyArg >= 0 && args[this.bodyArg] != null) {
+                body = JsonAPIBody.of(this.writer, args[this.bodyArg]);
+            }
+
+            var api = getApi();
+            switch (this.kind) {
+            case ASYNC_RESULT:
+                return api.exchangeAsync(uri, this.httpMethod, body, this.reader);
+            case ASYNC_BODY:
+                return api.exchangeAsync(uri, this.httpMethod, body, this.reader).thenApply(JsonAPIResult::getBody);
+            case ASYNC_VOID:
+                return api.exchangeAsync(uri, this.httpMethod, body, this.reader).thenApply(r -> null);
+            case RESULT:
+                return api.exchange(uri, this.httpMethod, body, this.reader);
+            case BODY:
+                return api.exchange(uri, this.httpMethod, body, this.reader).getBody();
+            default:
+                api.exchange(uri, this.httpMethod, body, this.reader);
+                return null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import static java.util.Objects.requireNonNull;
+
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Reference-counted pool of {@link HttpClient}s, one per distinct client settings of {@link JsonAPIConfig}, so that
+ * {@link JsonAPI} instances share connections (and the selector thread) instead of building a client per request.
+ */
+public class JsonAPIClients {
+
+    /**
+     * Snapshot of the client settings of a {@link JsonAPIConfig}, which is mutable so can't be a map key itself
+     */
+    @Getter
+    public static class Key {
+
+        final int connectTimeoutSeconds;
+
+        @Nonnull
+        final HttpClient.Redirect redirect;
+
+        final InetSocketAddress proxy;
+
+        @Nonnull
+        final HttpClient.Version version;
+
+        final Executor executor;
+
+        public Key(@Nonnull JsonAPIConfig config) {
+            this.connectTimeoutSeconds = config.getConnectTimeoutSeconds();
+            this.redirect = requireNonNull(config.getRedirect());
+            this.proxy = config.getProxy();
+            this.version = requireNonNull(config.getVersion());
+            this.executor = config.getClientExecutor();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key == false) {
+                return false;
+            }
+
+            var that = (Key) obj;
+            return this.connectTimeoutSeconds == that.connectTimeoutSeconds && this.redirect == that.redirect
+                    && Objects.equals(this.proxy, that.proxy) && this.version == that.version
+                    && this.executor == that.executor;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.connectTimeoutSeconds, this.redirect, this.proxy, this.version,
+                    System.identityHashCode(this.executor));
+        }
+
+    }
+
+    static class Entry {
+
+        @Nonnull
+        final HttpClient client;
+
+        int refCount;
+
+        Entry(@Nonnull HttpClient client) {
+            this.client = client;
+        }
+
+    }
+
+    static final Map<Key, Entry> ENTRIES = new HashMap<>();
+
+    @Nonnull
+    public static HttpClient newClient(@Nonnull Key key) {
+        var r = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(key.getConnectTimeoutSeconds()))
+                .followRedirects(key.getRedirect()).version(key.getVersion());
+
+        if (key.getProxy() != null) {
+            r.proxy(ProxySelector.of(key.getProxy()));
+        }
+        if (key.getExecutor() != null) {
+            r.executor(key.getExecutor());
+        }
+        return requireNonNull(r.build());
+    }
+
+    /**
+     * Must be paired with {@link #release(Key)}
+     */
+    @Nonnull
+    public static HttpClient acquire(@Nonnull Key key) {
+        synchronized (ENTRIES) {
+            var entry = ENTRIES.computeIfAbsent(key, k -> new Entry(newClient(k)));
+            entry.refCount++;
+            return entry.client;
+        }
+    }
+
+    /**
+     * The client is dropped from the pool once nobody uses it; a JDK 11+ HttpClient has no close() and its selector
+     * thread exits once the client becomes unreachable
+     */
+    public static void release(@Nonnull Key key) {
+        synchronized (ENTRIES) {
+            var entry = ENTRIES.get(key);
+            if (entry != null && --entry.refCount <= 0) {
+                ENTRIES.remove(key);
+            }
+        }
+    }
+
+}
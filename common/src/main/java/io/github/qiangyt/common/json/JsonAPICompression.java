@@ -0,0 +1,268 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import io.github.qiangyt.common.err.BadStateException;
+import jakarta.annotation.Nonnull;
+
+/**
+ * gzip/deflate of {@link JsonAPI} bodies: request bodies are gzipped in memory; response bodies are inflated as they
+ * arrive, without blocking, in front of whichever {@link HttpResponse.BodySubscriber} handles them, so the parser
+ * consumes the decoded bytes in the same pass
+ */
+public final class JsonAPICompression {
+
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    static final int CHUNK_SIZE = 8192;
+
+    JsonAPICompression() {
+    }
+
+    @Nonnull
+    public static byte[] gzip(@Nonnull byte[] bytes) {
+        var out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (var gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new BadStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the bodies whose Content-Encoding is gzip or deflate, passes others as is
+     */
+    @Nonnull
+    public static <T> HttpResponse.BodyHandler<T> decoding(@Nonnull HttpResponse.BodyHandler<T> handler) {
+        return info -> {
+            var encoding = info.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase();
+            switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new InflatingSubscriber<>(handler.apply(info), true);
+            case "deflate":
+                return new InflatingSubscriber<>(handler.apply(info), false);
+            default:
+                return handler.apply(info);
+            }
+        };
+    }
+
+    /**
+     * Each upstream item is inflated into one (possibly empty) downstream item, so the demand of the downstream
+     * subscriber is passed through as is. The gzip trailer is not verified
+     */
+    static class InflatingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        static final int GZIP_FEXTRA = 4;
+        static final int GZIP_FNAME = 8;
+        static final int GZIP_FCOMMENT = 16;
+        static final int GZIP_FHCRC = 2;
+
+        @Nonnull
+        final HttpResponse.BodySubscriber<T> downstream;
+
+        final boolean gzip;
+
+        /** gzip header bytes, until the whole header arrived */
+        ByteArrayOutputStream header;
+
+        Inflater inflater;
+
+        Flow.Subscription subscription;
+
+        boolean done;
+
+        /** an empty body, e.g. of a 304, is passed as is */
+        boolean received;
+
+        InflatingSubscriber(@Nonnull HttpResponse.BodySubscriber<T> downstream, boolean gzip) {
+            this.downstream = downstream;
+            this.gzip = gzip;
+            if (gzip) {
+                this.header = new ByteArrayOutputStream();
+            } else {
+                // zlib wrapped, as the http deflate coding is specified
+                this.inflater = new Inflater(false);
+            }
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return this.downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            this.downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (this.done) {
+                return;
+            }
+
+            List<ByteBuffer> out;
+            try {
+                out = new ArrayList<>();
+                for (var item : items) {
+                    inflate(item, out);
+                }
+            } catch (Exception e) {
+                this.subscription.cancel();
+                onError(e);
+                return;
+            }
+            this.downstream.onNext(out);
+        }
+
+        void inflate(@Nonnull ByteBuffer item, @Nonnull List<ByteBuffer> out) throws DataFormatException {
+            if (item.hasRemaining()) {
+                this.received = true;
+            }
+            if (this.inflater == null) {
+                item = skipHeader(item);
+                if (item == null) {
+                    return;
+                }
+            }
+            if (this.inflater.finished()) {
+                // trailer
+                return;
+            }
+
+            this.inflater.setInput(item);
+            while (this.inflater.finished() == false && this.inflater.needsInput() == false) {
+                var chunk = new byte[CHUNK_SIZE];
+                int n = this.inflater.inflate(chunk);
+                if (n > 0) {
+                    out.add(ByteBuffer.wrap(chunk, 0, n));
+                } else if (this.inflater.needsDictionary()) {
+                    throw new DataFormatException("preset dictionary is not supported");
+                }
+            }
+        }
+
+        /**
+         * @return the deflate data after the gzip header, null if the header isn't complete yet
+         */
+        ByteBuffer skipHeader(@Nonnull ByteBuffer item) throws DataFormatException {
+            while (item.hasRemaining()) {
+                this.header.write(item.get());
+            }
+
+            var h = this.header.toByteArray();
+            int len = gzipHeaderLength(h);
+            if (len < 0) {
+                return null;
+            }
+
+            this.header = null;
+            this.inflater = new Inflater(true);
+            return ByteBuffer.wrap(h, len, h.length - len);
+        }
+
+        /**
+         * @return -1 if incomplete
+         */
+        static int gzipHeaderLength(@Nonnull byte[] h) throws DataFormatException {
+            if (h.length < 10) {
+                return -1;
+            }
+            if ((h[0] & 0xff) != 0x1f || (h[1] & 0xff) != 0x8b || h[2] != 8) {
+                throw new DataFormatException("not in gzip format");
+            }
+
+            int flags = h[3] & 0xff;
+            int pos = 10;
+            if ((flags & GZIP_FEXTRA) != 0) {
+                if (h.length < pos + 2) {
+                    return -1;
+                }
+                pos += 2 + ((h[pos] & 0xff) | ((h[pos + 1] & 0xff) << 8));
+            }
+            if ((flags & GZIP_FNAME) != 0) {
+                pos = skipZeroTerminated(h, pos);
+            }
+            if ((flags & GZIP_FCOMMENT) != 0 && pos >= 0) {
+                pos = skipZeroTerminated(h, pos);
+            }
+            if ((flags & GZIP_FHCRC) != 0 && pos >= 0) {
+                pos += 2;
+            }
+            return (pos < 0 || pos > h.length) ? -1 : pos;
+        }
+
+        static int skipZeroTerminated(@Nonnull byte[] h, int pos) {
+            for (int i = pos; i < h.length; i++) {
+                if (h[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (this.done) {
+                return;
+            }
+            this.done = true;
+            end();
+            this.downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (this.done) {
+                return;
+            }
+            this.done = true;
+
+            boolean finished = this.received == false || (this.inflater != null && this.inflater.finished());
+            end();
+            if (finished) {
+                this.downstream.onComplete();
+            } else {
+                this.downstream.onError(new BadStateException("truncated compressed body"));
+            }
+        }
+
+        void end() {
+            if (this.inflater != null) {
+                this.inflater.end();
+            }
+        }
+
+    }
+
+}
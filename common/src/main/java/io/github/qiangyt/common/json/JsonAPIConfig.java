@@ -19,17 +19,24 @@ package io.github.qiangyt.common.json;
 import jakarta.annotation.Nonnull;
 import static java.util.Objects.requireNonNull;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import lombok.Getter;
 import lombok.Setter;
 import io.github.qiangyt.common.bean.Dumpable;
 import io.github.qiangyt.common.err.BadStateException;
+import io.github.qiangyt.common.err.BadValueException;
 
 @Getter
 @Setter
@@ -37,13 +44,35 @@ public class JsonAPIConfig implements Dumpable {
 
     public static final int DEFAULT_CONNECT_TIMEOUT = 10;
     public static final int DEFAULT_READ_TIMEOUT = 10;
+    public static final int DEFAULT_MAX_ERROR_BODY_SIZE = 4096;
+    public static final int DEFAULT_EJECT_AFTER_FAILURES = 3;
+    public static final long DEFAULT_EJECT_MILLIS = 30_000;
 
     @Nonnull
     public static final HttpClient.Redirect DEFAULT_REDIRECT = HttpClient.Redirect.ALWAYS;
 
+    @Nonnull
+    public static final HttpClient.Version DEFAULT_VERSION = HttpClient.Version.HTTP_2;
+
     @Nonnull
     private URI endpoint;
 
+    /**
+     * Replicas of the upstream; if not empty, each attempt goes to one of them picked by {@link #getBalancer()}, rather
+     * than to {@link #getEndpoint()}
+     */
+    @Nonnull
+    private List<URI> endpoints = List.of();
+
+    @Nonnull
+    private JsonAPIBalancer balancer = JsonAPIBalancer.ROUND_ROBIN;
+
+    /** an endpoint of {@link #getEndpoints()} is ejected after so many consecutive failures */
+    private int ejectAfterFailures = DEFAULT_EJECT_AFTER_FAILURES;
+
+    /** an ejected endpoint gets requests again after so long */
+    private long ejectMillis = DEFAULT_EJECT_MILLIS;
+
     private int connectTimeoutSeconds = DEFAULT_CONNECT_TIMEOUT;
 
     private int readTimeoutSeconds = DEFAULT_READ_TIMEOUT;
@@ -53,6 +82,42 @@ public class JsonAPIConfig implements Dumpable {
 
     private InetSocketAddress proxy;
 
+    /** preferred http version, HTTP_2 falls back to HTTP_1_1 if the server doesn't support it */
+    @Nonnull
+    private HttpClient.Version version = DEFAULT_VERSION;
+
+    /** at most so many bytes of a non-2xx response body are kept for {@link JsonAPIErrorHandler} */
+    private int maxErrorBodySize = DEFAULT_MAX_ERROR_BODY_SIZE;
+
+    /** sends Accept-Encoding, and decodes gzip/deflate responses */
+    private boolean acceptCompression = true;
+
+    /** request bodies of at least so many bytes are gzipped, 0 means never */
+    private int requestCompressionThreshold;
+
+    /** Executor of the shared {@link HttpClient}, null means the default cached thread pool of the HttpClient */
+    private Executor clientExecutor;
+
+    /**
+     * Runs deserialization of asynchronous responses; null means the common ForkJoinPool
+     */
+    private Executor executor;
+
+    /** null means no retry */
+    private JsonAPIRetryPolicy retryPolicy;
+
+    /** null means no limits */
+    private JsonAPILimitPolicy limitPolicy;
+
+    /** null means no circuit breaker */
+    private JsonAPICircuitBreakerPolicy circuitBreakerPolicy;
+
+    /** null means no response caching; may be shared by several configs */
+    private JsonAPICache responseCache;
+
+    /** null means no coalescing of identical concurrent calls; may be shared by several configs */
+    private JsonAPISingleFlight singleFlight;
+
     public JsonAPIConfig(@Nonnull String endpointString) {
         this(parseEndpoint(endpointString));
     }
@@ -61,6 +126,17 @@ public class JsonAPIConfig implements Dumpable {
         this.endpoint = requireNonNull(endpoint);
     }
 
+    /**
+     * The first one is also {@link #getEndpoint()}
+     */
+    public JsonAPIConfig(@Nonnull List<URI> endpoints) {
+        if (endpoints.isEmpty()) {
+            throw new BadValueException("endpoints should not be empty");
+        }
+        this.endpoint = endpoints.get(0);
+        this.endpoints = List.copyOf(endpoints);
+    }
+
     @Nonnull
     public static URI parseEndpoint(String endpointString) {
         try {
@@ -70,11 +146,19 @@ public class JsonAPIConfig implements Dumpable {
         }
     }
 
+    /**
+     * scheme://authority of the uri, the key of per-endpoint states
+     */
+    @Nonnull
+    public static String endpointOf(@Nonnull URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
     @SuppressWarnings({ "null", "unchecked" })
     @Override
     public @Nonnull Map<String, Object> toMap(Map<Object, Object> visited) {
         if (visited == null) {
-            visited = new HashMap<>();
+            visited = Dumpable.newVisited();
         }
         if (visited.containsKey(this)) {
             return (Map<String, Object>) visited.get(this);
@@ -82,15 +166,47 @@ public class JsonAPIConfig implements Dumpable {
 
         var r = new HashMap<String, Object>();
         r.put("endpoint", getEndpoint());
+        r.put("endpoints", getEndpoints());
+        r.put("ejectAfterFailures", getEjectAfterFailures());
+        r.put("ejectMillis", getEjectMillis());
         r.put("connectTimeoutSeconds", getConnectTimeoutSeconds());
         r.put("readTimeoutSeconds", getReadTimeoutSeconds());
         r.put("redirect", getRedirect());
         r.put("proxy", getProxy());
+        r.put("version", getVersion());
+        r.put("maxErrorBodySize", getMaxErrorBodySize());
+        r.put("acceptCompression", isAcceptCompression());
+        r.put("requestCompressionThreshold", getRequestCompressionThreshold());
+        r.put("retryPolicy", (getRetryPolicy() == null) ? null : getRetryPolicy().toMap(visited));
+        r.put("limitPolicy", (getLimitPolicy() == null) ? null : getLimitPolicy().toMap(visited));
+        r.put("circuitBreakerPolicy",
+                (getCircuitBreakerPolicy() == null) ? null : getCircuitBreakerPolicy().toMap(visited));
 
         visited.put(this, r);
         return r;
     }
 
+    @Override
+    public void dumpTo(@Nonnull JsonGenerator gen, Set<Object> dumping) throws IOException {
+        Dumpable.dumpObject(this, gen, dumping, d -> {
+            Dumpable.writeField(gen, "endpoint", getEndpoint(), d);
+            Dumpable.writeField(gen, "endpoints", getEndpoints(), d);
+            gen.writeNumberField("ejectAfterFailures", getEjectAfterFailures());
+            gen.writeNumberField("ejectMillis", getEjectMillis());
+            gen.writeNumberField("connectTimeoutSeconds", getConnectTimeoutSeconds());
+            gen.writeNumberField("readTimeoutSeconds", getReadTimeoutSeconds());
+            Dumpable.writeField(gen, "redirect", getRedirect(), d);
+            Dumpable.writeField(gen, "proxy", getProxy(), d);
+            Dumpable.writeField(gen, "version", getVersion(), d);
+            gen.writeNumberField("maxErrorBodySize", getMaxErrorBodySize());
+            gen.writeBooleanField("acceptCompression", isAcceptCompression());
+            gen.writeNumberField("requestCompressionThreshold", getRequestCompressionThreshold());
+            Dumpable.writeField(gen, "retryPolicy", getRetryPolicy(), d);
+            Dumpable.writeField(gen, "limitPolicy", getLimitPolicy(), d);
+            Dumpable.writeField(gen, "circuitBreakerPolicy", getCircuitBreakerPolicy(), d);
+        });
+    }
+
     @Override
     public String toString() {
         return requireNonNull(dumpAsJson(null));
@@ -0,0 +1,143 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Runtime state of one of {@link JsonAPIConfig#getEndpoints()}: requests in flight, EWMA latency, and ejection after
+ * consecutive failures (io errors or 5xx). An ejected endpoint gets requests again after
+ * {@link JsonAPIConfig#getEjectMillis()}; if it still fails, it's ejected at once again. A failure counts as
+ * {@link #FAILURE_PENALTY} times the latency so far, so that an endpoint failing fast never looks the fastest
+ */
+@Getter
+public class JsonAPIEndpoint {
+
+    /** weight of the latest sample in the latency average */
+    static final double EWMA_ALPHA = 0.3;
+
+    /** latency sample of a failure, relative to the larger of its own latency and the average */
+    static final double FAILURE_PENALTY = 4;
+
+    final int index;
+
+    @Nonnull
+    final URI uri;
+
+    final int ejectAfterFailures;
+
+    final long ejectMillis;
+
+    final AtomicInteger outstanding = new AtomicInteger();
+
+    final AtomicLong requests = new AtomicLong();
+
+    final AtomicLong failures = new AtomicLong();
+
+    final AtomicLong ejections = new AtomicLong();
+
+    // below are guarded by this
+
+    @Getter(AccessLevel.NONE)
+    double ewmaMillis;
+
+    @Getter(AccessLevel.NONE)
+    int consecutiveFailures;
+
+    @Getter(AccessLevel.NONE)
+    long ejectedUntil;
+
+    public JsonAPIEndpoint(int index, @Nonnull URI uri, int ejectAfterFailures, long ejectMillis) {
+        this.index = index;
+        this.uri = uri;
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectMillis = ejectMillis;
+    }
+
+    public synchronized double getEwmaMillis() {
+        return this.ewmaMillis;
+    }
+
+    public synchronized boolean isAvailable(long now) {
+        return now >= this.ejectedUntil;
+    }
+
+    @Nonnull
+    public <B> CompletableFuture<HttpResponse<B>> execute(@Nonnull Supplier<CompletableFuture<HttpResponse<B>>> call) {
+        this.requests.incrementAndGet();
+        this.outstanding.incrementAndGet();
+        long begin = System.nanoTime();
+
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            this.outstanding.decrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return future.whenComplete((resp, ex) -> {
+            this.outstanding.decrementAndGet();
+
+            Boolean failed;
+            if (ex == null) {
+                failed = resp.statusCode() / 100 == 5;
+            } else {
+                var cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                // other errors, e.g. short-circuited or rejected locally, are not the endpoint's
+                failed = (cause instanceof IOException) ? Boolean.TRUE : null;
+            }
+            if (failed != null) {
+                onComplete((System.nanoTime() - begin) / 1e6, failed);
+            }
+        });
+    }
+
+    synchronized void onComplete(double latencyMillis, boolean failed) {
+        if (failed) {
+            latencyMillis = FAILURE_PENALTY * Math.max(latencyMillis, this.ewmaMillis);
+        }
+        this.ewmaMillis = (this.ewmaMillis == 0) ? latencyMillis
+                : this.ewmaMillis + EWMA_ALPHA * (latencyMillis - this.ewmaMillis);
+
+        if (failed == false) {
+            this.consecutiveFailures = 0;
+            return;
+        }
+
+        this.failures.incrementAndGet();
+        if (++this.consecutiveFailures >= this.ejectAfterFailures) {
+            long now = System.currentTimeMillis();
+            if (now >= this.ejectedUntil) {
+                this.ejections.incrementAndGet();
+            }
+            this.ejectedUntil = now + this.ejectMillis;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Runtime state of {@link JsonAPIConfig#getEndpoints()}, shared by all {@link JsonAPI}s of the same config instance,
+ * see {@link #of(JsonAPIConfig)}
+ */
+@Getter
+public class JsonAPIEndpoints {
+
+    /** weak keys, compared by identity: the states go away with their config */
+    static final Cache<JsonAPIConfig, JsonAPIEndpoints> GROUPS = CacheBuilder.newBuilder().weakKeys().build();
+
+    @Nonnull
+    final List<JsonAPIEndpoint> endpoints;
+
+    @Nonnull
+    final JsonAPIBalancer balancer;
+
+    final AtomicLong sequence = new AtomicLong();
+
+    public JsonAPIEndpoints(@Nonnull List<URI> uris, @Nonnull JsonAPIBalancer balancer, int ejectAfterFailures,
+            long ejectMillis) {
+        var eps = new ArrayList<JsonAPIEndpoint>(uris.size());
+        for (int i = 0; i < uris.size(); i++) {
+            eps.add(new JsonAPIEndpoint(i, uris.get(i), ejectAfterFailures, ejectMillis));
+        }
+        this.endpoints = Collections.unmodifiableList(eps);
+        this.balancer = balancer;
+    }
+
+    /**
+     * @return null if the config has no endpoint list
+     */
+    public static JsonAPIEndpoints of(@Nonnull JsonAPIConfig config) {
+        var uris = config.getEndpoints();
+        if (uris.isEmpty()) {
+            return null;
+        }
+
+        return GROUPS.asMap().compute(config, (cfg, existing) -> {
+            if (existing != null && existing.getBalancer() == cfg.getBalancer() && existing.hasUris(uris)) {
+                return existing;
+            }
+            return new JsonAPIEndpoints(uris, cfg.getBalancer(), cfg.getEjectAfterFailures(), cfg.getEjectMillis());
+        });
+    }
+
+    boolean hasUris(@Nonnull List<URI> uris) {
+        if (uris.size() != this.endpoints.size()) {
+            return false;
+        }
+        for (int i = 0; i < uris.size(); i++) {
+            if (uris.get(i).equals(this.endpoints.get(i).getUri()) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Balances over the endpoints not ejected, or over all of them if all are ejected
+     */
+    @Nonnull
+    public JsonAPIEndpoint choose() {
+        long now = System.currentTimeMillis();
+        var all = getEndpoints();
+
+        List<JsonAPIEndpoint> candidates = all;
+        for (int i = 0; i < all.size(); i++) {
+            if (all.get(i).isAvailable(now) == false) {
+                candidates = new ArrayList<>(all.size());
+                for (var ep : all) {
+                    if (ep.isAvailable(now)) {
+                        candidates.add(ep);
+                    }
+                }
+                break;
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = all;
+        }
+
+        return getBalancer().choose(candidates, this.sequence.getAndIncrement());
+    }
+
+}
@@ -33,6 +33,66 @@ public interface JsonAPIErrorHandler {
         return new BadStateException("Unexpected io error", exception);
     }
 
+    /**
+     * A call short-circuited by an OPEN (or HALF_OPEN, beyond the probes) circuit breaker fails with the returned
+     * exception, without being sent
+     */
+    @Nonnull
+    default RuntimeException onCircuitOpen(@Nonnull JsonAPICircuitBreaker breaker, @Nonnull JsonAPI api) {
+        return new BadStateException("%s: circuit breaker is %s", breaker.getEndpoint(), breaker.getState());
+    }
+
+    default void onErrorResponse(@Nonnull JsonAPIResult<?> result, @Nonnull JsonAPI api) {
+        if (JsonAPIErrorHandlerSupport.isLegacyOverridden(getClass(), "onErrorResponse")) {
+            onErrorResponse(result.getStatusCode(), api);
+            return;
+        }
+
+        switch (result.getStatusCode() / 100) {
+        case 4:
+            on4xxResponse(result, api);
+            return;
+        case 5:
+            on5xxResponse(result, api);
+            return;
+        default:
+            onUnexpectedResponse(result, api);
+            return;
+        }
+    }
+
+    default void on4xxResponse(@Nonnull JsonAPIResult<?> result, @Nonnull JsonAPI api) {
+        if (JsonAPIErrorHandlerSupport.isLegacyOverridden(getClass(), "on4xxResponse")) {
+            on4xxResponse(result.getStatusCode(), api);
+            return;
+        }
+        onUnexpectedResponse(result, api);
+    }
+
+    default void on5xxResponse(@Nonnull JsonAPIResult<?> result, @Nonnull JsonAPI api) {
+        if (JsonAPIErrorHandlerSupport.isLegacyOverridden(getClass(), "on5xxResponse")) {
+            on5xxResponse(result.getStatusCode(), api);
+            return;
+        }
+        onUnexpectedResponse(result, api);
+    }
+
+    default void onUnexpectedResponse(@Nonnull JsonAPIResult<?> result, @Nonnull JsonAPI api) {
+        if (JsonAPIErrorHandlerSupport.isLegacyOverridden(getClass(), "onUnexpectedResponse")) {
+            onUnexpectedResponse(result.getStatusCode(), api);
+            return;
+        }
+
+        var bodyText = (result.getErrorBody() == null) ? "<unknown>" : result.getErrorBody();
+        throw new BadStateException("Unexpected status %d: %s", result.getStatusCode(), bodyText);
+    }
+
+    /**
+     * Still called if overridden, by {@link #onErrorResponse(JsonAPIResult, JsonAPI)}
+     *
+     * @deprecated override {@link #onErrorResponse(JsonAPIResult, JsonAPI)} instead
+     */
+    @Deprecated
     default void onErrorResponse(int statusCode, @Nonnull JsonAPI api) {
         switch (statusCode / 100) {
         case 4:
@@ -47,18 +107,34 @@ public interface JsonAPIErrorHandler {
         }
     }
 
+    /**
+     * Still called if overridden, by {@link #on4xxResponse(JsonAPIResult, JsonAPI)}
+     *
+     * @deprecated override {@link #on4xxResponse(JsonAPIResult, JsonAPI)} instead
+     */
+    @Deprecated
     default void on4xxResponse(int statusCode, @Nonnull JsonAPI api) {
         onUnexpectedResponse(statusCode, api);
     }
 
+    /**
+     * Still called if overridden, by {@link #on5xxResponse(JsonAPIResult, JsonAPI)}
+     *
+     * @deprecated override {@link #on5xxResponse(JsonAPIResult, JsonAPI)} instead
+     */
+    @Deprecated
     default void on5xxResponse(int statusCode, @Nonnull JsonAPI api) {
         onUnexpectedResponse(statusCode, api);
     }
 
+    /**
+     * Still called if overridden, by {@link #onUnexpectedResponse(JsonAPIResult, JsonAPI)}
+     *
+     * @deprecated override {@link #onUnexpectedResponse(JsonAPIResult, JsonAPI)} instead, which has the error body
+     */
+    @Deprecated
     default void onUnexpectedResponse(int statusCode, @Nonnull JsonAPI api) {
-        var resp = api.getResponse();
-        var bodyText = (resp == null) ? "<unknown>" : resp.body();
-        throw new BadStateException("Unexpected status %d: %s", statusCode, bodyText);
+        throw new BadStateException("Unexpected status %d", statusCode);
     }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import jakarta.annotation.Nonnull;
+
+class JsonAPIErrorHandlerSupport {
+
+    static final String[] LEGACY_HOOKS = { "onErrorResponse", "on4xxResponse", "on5xxResponse",
+            "onUnexpectedResponse" };
+
+    /** names of the deprecated (int, JsonAPI) hooks overridden by the class */
+    static final ClassValue<Set<String>> LEGACY_OVERRIDDEN = new ClassValue<>() {
+        @Override
+        protected Set<String> computeValue(Class<?> clazz) {
+            var r = new HashSet<String>();
+            for (var name : LEGACY_HOOKS) {
+                try {
+                    var m = clazz.getMethod(name, int.class, JsonAPI.class);
+                    if (m.getDeclaringClass() != JsonAPIErrorHandler.class) {
+                        r.add(name);
+                    }
+                } catch (NoSuchMethodException e) {
+                    // not possible as the interface declares them
+                }
+            }
+            return Set.copyOf(r);
+        }
+    };
+
+    static boolean isLegacyOverridden(@Nonnull Class<?> clazz, @Nonnull String hook) {
+        return LEGACY_OVERRIDDEN.get(clazz).contains(hook);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.Set;
+
+import io.github.qiangyt.common.bean.Dumpable;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Per-endpoint concurrency and rate limits of {@link JsonAPIConfig}, enforced by {@link JsonAPILimiter}. Calls beyond
+ * the limits wait in a bounded queue, or are rejected at once if the queue is full
+ */
+@Getter
+@Setter
+public class JsonAPILimitPolicy implements Dumpable {
+
+    public static final long DEFAULT_MAX_QUEUE_WAIT_MILLIS = 1000;
+    public static final int DEFAULT_ADAPTIVE_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_ADAPTIVE_MAX_LIMIT = 1000;
+    public static final double DEFAULT_ADAPTIVE_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_ADAPTIVE_TOLERANCE = 2.0;
+
+    @Nonnull
+    public static final Set<Integer> DEFAULT_OVERLOAD_STATUSES = Set.of(429, 503);
+
+    /** bulkhead: max requests in flight to an endpoint, 0 means unlimited; the upper bound if adaptive */
+    private int maxConcurrency;
+
+    /** token bucket: requests per second to an endpoint, 0 means unlimited */
+    private double ratePerSecond;
+
+    /** token bucket capacity, 0 means max(1, ratePerSecond) */
+    private int burst;
+
+    /** calls waiting for a permit, 0 means to reject at once */
+    private int maxQueueSize;
+
+    /** queued calls are rejected after waiting so long */
+    private long maxQueueWaitMillis = DEFAULT_MAX_QUEUE_WAIT_MILLIS;
+
+    /**
+     * AIMD concurrency limit: grows by 1 per limit's worth of fast completions, shrinks by
+     * {@link #getAdaptiveBackoffRatio()} (at most once per round trip) on overload: failures,
+     * {@link #getOverloadStatuses()}, or latency above {@link #getAdaptiveTolerance()} times the recent minimum
+     */
+    private boolean adaptive;
+
+    private int adaptiveInitialLimit = DEFAULT_ADAPTIVE_INITIAL_LIMIT;
+
+    private int adaptiveMinLimit = 1;
+
+    private double adaptiveBackoffRatio = DEFAULT_ADAPTIVE_BACKOFF_RATIO;
+
+    private double adaptiveTolerance = DEFAULT_ADAPTIVE_TOLERANCE;
+
+    @Nonnull
+    private Set<Integer> overloadStatuses = DEFAULT_OVERLOAD_STATUSES;
+
+}
@@ -0,0 +1,347 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.github.qiangyt.common.err.BadStateException;
+import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Runtime state of a {@link JsonAPILimitPolicy} for one endpoint: a bulkhead (fixed or adaptive concurrency limit) and
+ * a token bucket, with a bounded FIFO queue. Doesn't block any thread: queued calls are started by the completion of
+ * earlier ones, or by a timer when the bucket refills.
+ *
+ * Shared by all {@link JsonAPI}s with the same policy instance, see {@link #of(JsonAPILimitPolicy, URI)}
+ */
+@Getter
+public class JsonAPILimiter {
+
+    /** weak keys, compared by identity: limiters go away with their policy */
+    static final Cache<JsonAPILimitPolicy, Map<String, JsonAPILimiter>> LIMITERS = CacheBuilder.newBuilder().weakKeys()
+            .build();
+
+    /** latency within this of the baseline never counts as slow, to ignore jitter of very fast calls */
+    static final long ADAPTIVE_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** the latency baseline is renewed every so many samples, so that it follows a lasting slowdown */
+    static final int ADAPTIVE_PERIOD = 128;
+
+    static class Pending<B> {
+
+        @Nonnull
+        final Supplier<CompletableFuture<HttpResponse<B>>> call;
+
+        @Nonnull
+        final CompletableFuture<HttpResponse<B>> promise = new CompletableFuture<>();
+
+        Pending(@Nonnull Supplier<CompletableFuture<HttpResponse<B>>> call) {
+            this.call = call;
+        }
+
+    }
+
+    @Nonnull
+    final JsonAPILimitPolicy policy;
+
+    @Nonnull
+    final String endpoint;
+
+    final AtomicLong admitted = new AtomicLong();
+
+    final AtomicLong rejected = new AtomicLong();
+
+    // below are guarded by this
+
+    @Getter(AccessLevel.NONE)
+    final ArrayDeque<Pending<?>> queue = new ArrayDeque<>();
+
+    @Getter(AccessLevel.NONE)
+    double limit;
+
+    @Getter(AccessLevel.NONE)
+    int inFlight;
+
+    @Getter(AccessLevel.NONE)
+    double tokens;
+
+    @Getter(AccessLevel.NONE)
+    long refilledAt;
+
+    @Getter(AccessLevel.NONE)
+    boolean wakeupScheduled;
+
+    @Getter(AccessLevel.NONE)
+    long baseline = Long.MAX_VALUE;
+
+    @Getter(AccessLevel.NONE)
+    long periodMin = Long.MAX_VALUE;
+
+    @Getter(AccessLevel.NONE)
+    int periodSamples;
+
+    @Getter(AccessLevel.NONE)
+    long decreasedAt;
+
+    public JsonAPILimiter(@Nonnull JsonAPILimitPolicy policy, @Nonnull String endpoint) {
+        this.policy = policy;
+        this.endpoint = endpoint;
+        this.limit = policy.isAdaptive() ? policy.getAdaptiveInitialLimit() : policy.getMaxConcurrency();
+        this.tokens = getBurst();
+        this.refilledAt = System.nanoTime();
+    }
+
+    @Nonnull
+    public static JsonAPILimiter of(@Nonnull JsonAPILimitPolicy policy, @Nonnull URI uri) {
+        var byEndpoint = LIMITERS.asMap().computeIfAbsent(policy, p -> new ConcurrentHashMap<>());
+        return byEndpoint.computeIfAbsent(JsonAPIConfig.endpointOf(uri), ep -> new JsonAPILimiter(policy, ep));
+    }
+
+    public synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    public synchronized int getQueueSize() {
+        return this.queue.size();
+    }
+
+    /**
+     * How many more calls would be started or queued right now, rather than rejected
+     */
+    public synchronized int getAvailable() {
+        long room = 0;
+        if (this.queue.isEmpty()) {
+            // queued calls go first
+            room = Math.max(0, (long) currentLimit() - this.inFlight);
+
+            double rate = getPolicy().getRatePerSecond();
+            if (rate > 0) {
+                double tokens = this.tokens + (System.nanoTime() - this.refilledAt) * rate / 1e9;
+                room = Math.min(room, (long) Math.min(getBurst(), tokens));
+            }
+        }
+
+        long queueRoom = Math.max(0, getPolicy().getMaxQueueSize() - this.queue.size());
+        return (int) Math.min(Integer.MAX_VALUE, room + queueRoom);
+    }
+
+    double getBurst() {
+        var p = getPolicy();
+        return (p.getBurst() > 0) ? p.getBurst() : Math.max(1, p.getRatePerSecond());
+    }
+
+    int currentLimit() {
+        if (getPolicy().isAdaptive() == false && getPolicy().getMaxConcurrency() <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) this.limit;
+    }
+
+    int maxAdaptiveLimit() {
+        var max = getPolicy().getMaxConcurrency();
+        return (max > 0) ? max : JsonAPILimitPolicy.DEFAULT_ADAPTIVE_MAX_LIMIT;
+    }
+
+    /**
+     * Starts the call now if permitted, queues it, or fails it with {@link BadStateException} if the queue is full
+     */
+    @Nonnull
+    public <B> CompletableFuture<HttpResponse<B>> execute(@Nonnull Supplier<CompletableFuture<HttpResponse<B>>> call) {
+        var p = new Pending<B>(call);
+
+        synchronized (this) {
+            if (this.queue.isEmpty() == false || tryAcquire(System.nanoTime()) == false) {
+                if (this.queue.size() >= getPolicy().getMaxQueueSize()) {
+                    this.rejected.incrementAndGet();
+                    return CompletableFuture.failedFuture(
+                            new BadStateException("%s: too many requests (limit=%d, in flight=%d, queued=%d)",
+                                    getEndpoint(), currentLimit(), this.inFlight, this.queue.size()));
+                }
+
+                this.queue.add(p);
+                scheduleTimeout(p);
+                scheduleWakeup();
+                return p.promise;
+            }
+        }
+
+        start(p);
+        return p.promise;
+    }
+
+    /** under lock */
+    boolean tryAcquire(long now) {
+        if (this.inFlight >= currentLimit()) {
+            return false;
+        }
+
+        double rate = getPolicy().getRatePerSecond();
+        if (rate > 0) {
+            this.tokens = Math.min(getBurst(), this.tokens + (now - this.refilledAt) * rate / 1e9);
+            this.refilledAt = now;
+            if (this.tokens < 1) {
+                return false;
+            }
+            this.tokens -= 1;
+        }
+
+        this.inFlight++;
+        return true;
+    }
+
+    <B> void start(@Nonnull Pending<B> p) {
+        this.admitted.incrementAndGet();
+        long begin = System.nanoTime();
+
+        CompletableFuture<HttpResponse<B>> future;
+        try {
+            future = p.call.get();
+        } catch (RuntimeException e) {
+            release(begin, true);
+            p.promise.completeExceptionally(e);
+            return;
+        }
+
+        future.whenComplete((resp, ex) -> {
+            release(begin, ex != null || getPolicy().getOverloadStatuses().contains(resp.statusCode()));
+            if (ex == null) {
+                p.promise.complete(resp);
+            } else {
+                p.promise.completeExceptionally(ex);
+            }
+        });
+    }
+
+    void release(long begin, boolean overload) {
+        List<Pending<?>> ready;
+        synchronized (this) {
+            this.inFlight--;
+
+            long now = System.nanoTime();
+            if (getPolicy().isAdaptive()) {
+                adapt(now, now - begin, overload);
+            }
+            ready = drain(now);
+        }
+        ready.forEach(this::start);
+    }
+
+    /** under lock */
+    void adapt(long now, long latency, boolean overload) {
+        this.periodMin = Math.min(this.periodMin, latency);
+        this.baseline = Math.min(this.baseline, latency);
+        if (++this.periodSamples >= ADAPTIVE_PERIOD) {
+            this.baseline = this.periodMin;
+            this.periodMin = Long.MAX_VALUE;
+            this.periodSamples = 0;
+        }
+
+        var p = getPolicy();
+        boolean slow = latency > this.baseline * p.getAdaptiveTolerance() + ADAPTIVE_SLACK_NANOS;
+        if (overload || slow) {
+            // the requests in flight during this one's round trip reflect the same overload, so decrease once
+            if (now - this.decreasedAt > latency) {
+                this.limit = Math.max(p.getAdaptiveMinLimit(), this.limit * p.getAdaptiveBackoffRatio());
+                this.decreasedAt = now;
+            }
+        } else if (this.inFlight + 1 >= this.limit / 2) {
+            // grows only while the limit is actually used
+            this.limit = Math.min(maxAdaptiveLimit(), this.limit + 1 / this.limit);
+        }
+    }
+
+    /**
+     * Under lock; takes the queued calls that can start now, skipping the timed out or cancelled ones
+     */
+    @Nonnull
+    List<Pending<?>> drain(long now) {
+        var r = new ArrayList<Pending<?>>();
+        while (this.queue.isEmpty() == false) {
+            var p = this.queue.peek();
+            if (p.promise.isDone()) {
+                this.queue.poll();
+                continue;
+            }
+            if (tryAcquire(now) == false) {
+                break;
+            }
+            r.add(this.queue.poll());
+        }
+
+        if (this.queue.isEmpty() == false) {
+            scheduleWakeup();
+        }
+        return r;
+    }
+
+    /**
+     * Under lock; only needed if the queue is waiting for tokens rather than for a completion
+     */
+    void scheduleWakeup() {
+        double rate = getPolicy().getRatePerSecond();
+        if (this.wakeupScheduled || rate <= 0 || this.inFlight >= currentLimit()) {
+            return;
+        }
+
+        this.wakeupScheduled = true;
+        long delay = (long) Math.ceil(Math.max(0, 1 - this.tokens) * 1e9 / rate);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            List<Pending<?>> ready;
+            synchronized (this) {
+                this.wakeupScheduled = false;
+                ready = drain(System.nanoTime());
+            }
+            ready.forEach(this::start);
+        });
+    }
+
+    /** under lock */
+    void scheduleTimeout(@Nonnull Pending<?> p) {
+        long wait = getPolicy().getMaxQueueWaitMillis();
+        CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS).execute(() -> {
+            boolean removed;
+            synchronized (this) {
+                removed = this.queue.remove(p);
+            }
+            if (removed) {
+                this.rejected.incrementAndGet();
+                p.promise.completeExceptionally(
+                        new BadStateException("%s: queued for more than %d ms", getEndpoint(), wait));
+            }
+        });
+    }
+
+}
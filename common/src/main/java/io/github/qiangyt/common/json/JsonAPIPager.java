@@ -0,0 +1,254 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import io.github.qiangyt.common.err.BadStateException;
+import io.github.qiangyt.common.err.BadValueException;
+import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Lazily iterates the items of a paged listing, see {@link JsonAPI#paginate(String, JsonAPIPagination, String, Class)}.
+ * The first page is requested by the first {@link #hasNext()}; once a page is taken, the next one is requested in the
+ * background while its items are consumed. The items of a page are bound off the consumer thread, straight from the
+ * parsed tokens, and only the values that {@link JsonAPIPagination#getPointers()} asks for are kept besides them, so at
+ * most about two pages (the current one and the one in flight) are held.
+ *
+ * The iterator blocks while waiting, and is for a single consumer. {@link #close()}, or closing the {@link #stream()},
+ * abandons the page in flight.
+ */
+@Getter
+public class JsonAPIPager<T> implements Iterator<T>, AutoCloseable {
+
+    @Getter
+    static class Page<T> {
+
+        @Nonnull
+        final List<T> items;
+
+        /** null if last */
+        final URI next;
+
+        Page(@Nonnull List<T> items, URI next) {
+            this.items = items;
+            this.next = next;
+        }
+
+    }
+
+    @Getter(AccessLevel.NONE)
+    @Nonnull
+    final JsonAPI api;
+
+    @Nonnull
+    final URI first;
+
+    @Nonnull
+    final JsonAPIPagination pagination;
+
+    @Nonnull
+    final JsonPointer itemsPointer;
+
+    @Getter(AccessLevel.NONE)
+    @Nonnull
+    final ObjectReader reader;
+
+    int pages;
+
+    long items;
+
+    @Getter(AccessLevel.NONE)
+    Iterator<T> current = Collections.emptyIterator();
+
+    @Getter(AccessLevel.NONE)
+    CompletableFuture<Page<T>> pending;
+
+    boolean started;
+
+    boolean closed;
+
+    JsonAPIPager(@Nonnull JsonAPI api, @Nonnull URI first, @Nonnull JsonAPIPagination pagination,
+            @Nonnull String itemsPointer, @Nonnull ObjectReader reader) {
+        this.api = api;
+        this.first = first;
+        this.pagination = pagination;
+        this.itemsPointer = JsonPointer.compile(itemsPointer);
+        this.reader = reader;
+    }
+
+    /**
+     * Not through {@link JsonAPI#exchangeAsync(URI, String, Object, ObjectReader)}, whose result would hold the whole
+     * page; so pages are neither cached nor shared
+     */
+    @Nonnull
+    CompletableFuture<Page<T>> request(@Nonnull URI uri) {
+        var api = this.api;
+        return api.thenApplyWithContext(api.doExecuteAsync(uri, "GET", null, api.asyncBodyHandler()),
+                resp -> toPage(uri, resp));
+    }
+
+    @Nonnull
+    Page<T> toPage(@Nonnull URI uri, @Nonnull HttpResponse<Object> resp) {
+        int sc = resp.statusCode();
+        if (sc / 100 != 2) {
+            try (var errorBody = this.api.handleErrorResponse(resp)) {
+                throw new BadStateException("%s: page status is %d", uri, sc);
+            }
+        }
+
+        var items = new ArrayList<T>();
+        var values = new HashMap<JsonPointer, JsonNode>();
+        var tokens = (TokenBuffer) resp.body();
+        if (tokens != null) {
+            try (var p = tokens.asParser()) {
+                if (p.nextToken() != null) {
+                    walk(uri, p, JsonPointer.empty(), items, values);
+                }
+            } catch (IOException e) {
+                throw new BadValueException(e, "%s: failed to bind the items", uri);
+            }
+        }
+
+        var info = new JsonAPIPagination.PageInfo(resp.headers(), items.size(), values);
+        return new Page<>(items, this.pagination.next(uri, info));
+    }
+
+    /**
+     * Binds the items, and captures the wanted values, of the value at current token, skipping the other subtrees
+     */
+    void walk(@Nonnull URI uri, @Nonnull JsonParser p, @Nonnull JsonPointer at, @Nonnull List<T> items,
+            @Nonnull Map<JsonPointer, JsonNode> values) throws IOException {
+        var t = p.currentToken();
+
+        if (at.equals(this.itemsPointer)) {
+            if (t == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (t != JsonToken.START_ARRAY) {
+                throw new BadValueException("%s: %s is not an array", uri, this.itemsPointer);
+            }
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                items.add(this.reader.readValue(p));
+            }
+            return;
+        }
+
+        var wanted = this.pagination.getPointers();
+        if (wanted.contains(at)) {
+            values.put(at, this.reader.readTree(p));
+            return;
+        }
+
+        if (isAncestor(at, this.itemsPointer) == false && wanted.stream().noneMatch(w -> isAncestor(at, w))) {
+            p.skipChildren();
+            return;
+        }
+
+        if (t == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                var name = p.currentName();
+                p.nextToken();
+                walk(uri, p, at.appendProperty(name), items, values);
+            }
+        } else if (t == JsonToken.START_ARRAY) {
+            int index = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                walk(uri, p, at.appendIndex(index++), items, values);
+            }
+        }
+    }
+
+    static boolean isAncestor(@Nonnull JsonPointer ancestor, @Nonnull JsonPointer descendant) {
+        return descendant.toString().startsWith(ancestor.toString() + "/");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.closed) {
+            return false;
+        }
+        if (this.started == false) {
+            this.started = true;
+            this.pending = request(this.first);
+        }
+
+        while (this.current.hasNext() == false) {
+            var p = this.pending;
+            if (p == null) {
+                return false;
+            }
+
+            var page = JsonAPI.join(p);
+            this.pending = (page.getNext() == null) ? null : request(page.getNext());
+            this.current = page.getItems().iterator();
+            this.pages++;
+            this.items += page.getItems().size();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (hasNext() == false) {
+            throw new NoSuchElementException();
+        }
+        return this.current.next();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.current = Collections.emptyIterator();
+
+        var p = this.pending;
+        if (p != null) {
+            this.pending = null;
+            p.cancel(false);
+        }
+    }
+
+    @Nonnull
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+}
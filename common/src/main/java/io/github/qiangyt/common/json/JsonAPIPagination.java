@@ -0,0 +1,222 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.github.qiangyt.common.err.BadValueException;
+import io.github.qiangyt.common.misc.StringHelper;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Tells the uri of the page after the current one, for {@link JsonAPIPager}
+ */
+@FunctionalInterface
+public interface JsonAPIPagination {
+
+    /** the rel="next" link of the RFC 8288 Link header */
+    @Nonnull
+    public static final JsonAPIPagination LINK = (current, page) -> nextLink(current, page.getHeaders());
+
+    static final Pattern LINK_REL = Pattern.compile("rel\\s*=\\s*\"?([^\";,]+)\"?", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * What {@link JsonAPIPager} keeps of a (2xx) page, besides its items: the body itself isn't kept
+     */
+    @Getter
+    public static class PageInfo {
+
+        @Nonnull
+        final HttpHeaders headers;
+
+        final int itemCount;
+
+        /** the values at {@link JsonAPIPagination#getPointers()} that are present in the body */
+        @Nonnull
+        final Map<JsonPointer, JsonNode> values;
+
+        public PageInfo(@Nonnull HttpHeaders headers, int itemCount, @Nonnull Map<JsonPointer, JsonNode> values) {
+            this.headers = headers;
+            this.itemCount = itemCount;
+            this.values = values;
+        }
+
+        /**
+         * @return null if absent
+         */
+        public JsonNode getValue(@Nonnull JsonPointer pointer) {
+            return this.values.get(pointer);
+        }
+
+    }
+
+    /**
+     * @return null if current page is the last one
+     */
+    URI next(@Nonnull URI current, @Nonnull PageInfo page);
+
+    /**
+     * JSON pointers of the (small) body values that {@link #next(URI, PageInfo)} needs, captured while the items are
+     * bound
+     */
+    @Nonnull
+    default Set<JsonPointer> getPointers() {
+        return Set.of();
+    }
+
+    /**
+     * The next cursor is taken from the page body, and sent as a query parameter; stops at a missing or empty cursor
+     *
+     * @param cursorPointer
+     *            JSON pointer of the next cursor in the page body, e.g. "/meta/next_cursor"
+     */
+    @Nonnull
+    static JsonAPIPagination cursor(@Nonnull String cursorPointer, @Nonnull String cursorParam) {
+        var pointer = JsonPointer.compile(cursorPointer);
+        var pointers = Set.of(pointer);
+
+        return new JsonAPIPagination() {
+            @Override
+            public URI next(URI current, PageInfo page) {
+                var cursor = page.getValue(pointer);
+                if (cursor == null || cursor.isNull() || cursor.asText().isEmpty()) {
+                    return null;
+                }
+                return withQueryParam(current, cursorParam, cursor.asText());
+            }
+
+            @Override
+            public Set<JsonPointer> getPointers() {
+                return pointers;
+            }
+        };
+    }
+
+    /**
+     * The offset query parameter (0 if absent in the first uri) is advanced by the item count; stops at a page with
+     * fewer than pageSize items. The page size parameter itself, if any, is expected in the first uri.
+     */
+    @Nonnull
+    static JsonAPIPagination offset(@Nonnull String offsetParam, int pageSize) {
+        if (pageSize <= 0) {
+            throw new BadValueException("page size should be positive: %d", pageSize);
+        }
+        return (current, page) -> {
+            int itemCount = page.getItemCount();
+            if (itemCount < pageSize) {
+                return null;
+            }
+
+            var offset = queryParam(current, offsetParam);
+            long next;
+            try {
+                next = ((offset == null) ? 0 : Long.parseLong(offset)) + itemCount;
+            } catch (NumberFormatException e) {
+                throw new BadValueException(e, "invalid %s: %s", offsetParam, offset);
+            }
+            return withQueryParam(current, offsetParam, Long.toString(next));
+        };
+    }
+
+    static URI nextLink(@Nonnull URI current, @Nonnull HttpHeaders headers) {
+        for (var value : headers.allValues("Link")) {
+            int i = 0;
+            while (true) {
+                int begin = value.indexOf('<', i);
+                int end = (begin < 0) ? -1 : value.indexOf('>', begin);
+                if (end < 0) {
+                    break;
+                }
+
+                int paramsEnd = value.indexOf('<', end);
+                var params = value.substring(end + 1, (paramsEnd < 0) ? value.length() : paramsEnd);
+                var m = LINK_REL.matcher(params);
+                if (m.find()) {
+                    for (var rel : m.group(1).trim().split("\\s+")) {
+                        if ("next".equalsIgnoreCase(rel)) {
+                            return current.resolve(value.substring(begin + 1, end).trim());
+                        }
+                    }
+                }
+                i = end + 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The decoded value of the first query parameter with the name, null if absent
+     */
+    static String queryParam(@Nonnull URI uri, @Nonnull String name) {
+        var query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+
+        for (var pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            var key = URLDecoder.decode((eq < 0) ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return (eq < 0) ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the query parameters with the name, or appends one if absent
+     */
+    @Nonnull
+    static URI withQueryParam(@Nonnull URI uri, @Nonnull String name, @Nonnull String value) {
+        var query = new StringBuilder();
+        var rawQuery = uri.getRawQuery();
+        if (rawQuery != null) {
+            for (var pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                var key = URLDecoder.decode((eq < 0) ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                if (pair.isEmpty() || key.equals(name)) {
+                    continue;
+                }
+                query.append(pair).append('&');
+            }
+        }
+        query.append(StringHelper.urlEncode(name)).append('=').append(StringHelper.urlEncode(value));
+
+        var s = uri.toString();
+        int end = s.indexOf('#');
+        var fragment = (end < 0) ? "" : s.substring(end);
+        s = (end < 0) ? s : s.substring(0, end);
+        int q = s.indexOf('?');
+        try {
+            return new URI(((q < 0) ? s : s.substring(0, q)) + '?' + query + fragment);
+        } catch (URISyntaxException e) {
+            throw new BadValueException(e, "invalid uri: %s", uri);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * One item of {@link JsonAPI#executeAll(java.util.List, int, boolean, Class)}
+ */
+@Getter
+public class JsonAPIRequest {
+
+    @Nonnull
+    final String method;
+
+    /** appended to {@link JsonAPI#getUri()}, see {@link JsonAPI#resolve(String)}; null means none */
+    final String path;
+
+    final Object body;
+
+    public JsonAPIRequest(@Nonnull String method, String path, Object body) {
+        this.method = method;
+        this.path = path;
+        this.body = body;
+    }
+
+    @Nonnull
+    public static JsonAPIRequest GET(String path) {
+        return new JsonAPIRequest("GET", path, null);
+    }
+
+    @Nonnull
+    public static JsonAPIRequest POST(String path, Object body) {
+        return new JsonAPIRequest("POST", path, body);
+    }
+
+    @Nonnull
+    public static JsonAPIRequest PUT(String path, Object body) {
+        return new JsonAPIRequest("PUT", path, body);
+    }
+
+    @Nonnull
+    public static JsonAPIRequest DELETE(String path) {
+        return new JsonAPIRequest("DELETE", path, null);
+    }
+
+}
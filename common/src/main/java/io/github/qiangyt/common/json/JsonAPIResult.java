@@ -0,0 +1,161 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.github.qiangyt.common.err.BadStateException;
+import jakarta.annotation.Nonnull;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Outcome of one {@link JsonAPI} call, returned to the caller instead of being kept on the (shared) {@link JsonAPI}
+ */
+@Getter
+public class JsonAPIResult<T> {
+
+    final int statusCode;
+
+    @Nonnull
+    final HttpHeaders headers;
+
+    final T body;
+
+    /** body of a non-2xx response, null for 2xx responses or if its head has not been read */
+    @Getter(AccessLevel.NONE)
+    final ErrorBody errorBody;
+
+    /**
+     * Lazily captures the head of a non-2xx response body, so that the body isn't read at all if nobody needs it, and
+     * never kept beyond the size limit
+     */
+    public static class ErrorBody implements AutoCloseable {
+
+        @Nonnull
+        final InputStream in;
+
+        final int maxSize;
+
+        byte[] head;
+
+        boolean truncated;
+
+        public ErrorBody(@Nonnull InputStream in, int maxSize) {
+            this.in = in;
+            this.maxSize = maxSize;
+        }
+
+        @Nonnull
+        public String getText() {
+            readHead();
+
+            if (this.truncated == false) {
+                return new String(this.head, StandardCharsets.UTF_8);
+            }
+            return new String(this.head, 0, this.maxSize, StandardCharsets.UTF_8) + "...";
+        }
+
+        void readHead() {
+            if (this.head != null) {
+                return;
+            }
+
+            try {
+                this.head = this.in.readNBytes(this.maxSize);
+                if (this.head.length == this.maxSize) {
+                    // peek one more byte to know whether it is truncated
+                    int next = this.in.read();
+                    if (next >= 0) {
+                        this.truncated = true;
+                        this.head = Arrays.copyOf(this.head, this.maxSize + 1);
+                        this.head[this.maxSize] = (byte) next;
+                    }
+                }
+            } catch (IOException e) {
+                throw new BadStateException(e);
+            }
+        }
+
+        /**
+         * A copy of the captured head, detached from the response stream, to be kept in the returned result after the
+         * rest of the body is consumed and the stream closed
+         *
+         * @return null if the head has not been read
+         */
+        public ErrorBody snapshot() {
+            if (this.head == null) {
+                return null;
+            }
+
+            var r = new ErrorBody(InputStream.nullInputStream(), this.maxSize);
+            r.head = this.head;
+            r.truncated = this.truncated;
+            return r;
+        }
+
+        /**
+         * The whole body: the captured head (if any) followed by the unread rest
+         */
+        @Nonnull
+        public InputStream remaining() {
+            if (this.head == null) {
+                return this.in;
+            }
+            if (this.truncated == false) {
+                return new ByteArrayInputStream(this.head);
+            }
+            return new SequenceInputStream(new ByteArrayInputStream(this.head), this.in);
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.in.close();
+            } catch (IOException e) {
+                throw new BadStateException(e);
+            }
+        }
+
+    }
+
+    public JsonAPIResult(int statusCode, @Nonnull HttpHeaders headers, T body, ErrorBody errorBody) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.errorBody = errorBody;
+    }
+
+    /**
+     * Text of a non-2xx response body, truncated to {@link JsonAPIConfig#getMaxErrorBodySize()} bytes; null for 2xx
+     * responses. Once the result is returned, it is available only if the error handler has read it.
+     */
+    public String getErrorBody() {
+        return (this.errorBody == null) ? null : this.errorBody.getText();
+    }
+
+    public boolean isSuccess() {
+        return this.statusCode / 100 == 2;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.Set;
+
+import io.github.qiangyt.common.bean.Dumpable;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Retry, backoff and hedging settings of {@link JsonAPIConfig}, executed by {@link JsonAPIRetryer}
+ */
+@Getter
+@Setter
+public class JsonAPIRetryPolicy implements Dumpable {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 2000;
+    public static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 60000;
+    public static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+    public static final double DEFAULT_JITTER = 0.5;
+    public static final double DEFAULT_BUDGET_RATIO = 0.2;
+    public static final int DEFAULT_BUDGET_MAX_TOKENS = 10;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+
+    @Nonnull
+    public static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    @Nonnull
+    public static final Set<Integer> DEFAULT_RETRY_STATUSES = Set.of(429, 502, 503, 504);
+
+    /** including the first attempt, 1 means no retry */
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+    private double backoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+
+    /**
+     * The longest Retry-After of a response that is waited for (not capped by {@link #getMaxBackoffMillis()}); a longer
+     * one gives up retrying, so the response goes to the {@link JsonAPIErrorHandler}
+     */
+    private long maxRetryAfterMillis = DEFAULT_MAX_RETRY_AFTER_MILLIS;
+
+    /** 0..1, the part of each backoff that is randomized */
+    private double jitter = DEFAULT_JITTER;
+
+    /**
+     * Methods that are safe to send again; other methods are retried only if the connection couldn't be established
+     */
+    @Nonnull
+    private Set<String> retryMethods = IDEMPOTENT_METHODS;
+
+    @Nonnull
+    private Set<Integer> retryStatuses = DEFAULT_RETRY_STATUSES;
+
+    /** each call earns so many retry tokens, each retry or hedge spends one */
+    private double budgetRatio = DEFAULT_BUDGET_RATIO;
+
+    /** cap of the retry tokens, also the initial amount */
+    private int budgetMaxTokens = DEFAULT_BUDGET_MAX_TOKENS;
+
+    /** sends a second request if the first one is slower than {@link #getHedgeDelayMillis()} */
+    private boolean hedging;
+
+    @Nonnull
+    private Set<String> hedgeMethods = Set.of("GET");
+
+    /** 0 means the observed {@link #getHedgePercentile()} latency */
+    private long hedgeDelayMillis;
+
+    private double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+}
@@ -0,0 +1,277 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Runs the attempts of a call according to a {@link JsonAPIRetryPolicy}. Backoff delays are scheduled, never slept, so
+ * no thread is blocked between attempts.
+ */
+@Getter
+public class JsonAPIRetryer {
+
+    static final int MIN_HEDGE_SAMPLES = 20;
+
+    @Nonnull
+    final JsonAPIRetryPolicy policy;
+
+    @Nonnull
+    final LatencyWindow latencies = new LatencyWindow();
+
+    /** retry tokens, in thousandths */
+    final AtomicInteger budget;
+
+    final AtomicInteger retries = new AtomicInteger();
+
+    final AtomicInteger hedges = new AtomicInteger();
+
+    public JsonAPIRetryer(@Nonnull JsonAPIRetryPolicy policy) {
+        this.policy = policy;
+        this.budget = new AtomicInteger(policy.getBudgetMaxTokens() * 1000);
+    }
+
+    void deposit() {
+        int amount = (int) (getPolicy().getBudgetRatio() * 1000);
+        int max = getPolicy().getBudgetMaxTokens() * 1000;
+        this.budget.getAndUpdate(b -> Math.min(max, b + amount));
+    }
+
+    boolean withdraw() {
+        while (true) {
+            int b = this.budget.get();
+            if (b < 1000) {
+                return false;
+            }
+            if (this.budget.compareAndSet(b, b - 1000)) {
+                return true;
+            }
+        }
+    }
+
+    @Nonnull
+    public <B> CompletableFuture<HttpResponse<B>> execute(@Nonnull String method,
+            @Nonnull Supplier<CompletableFuture<HttpResponse<B>>> send) {
+        deposit();
+
+        var p = getPolicy();
+        Supplier<CompletableFuture<HttpResponse<B>>> attempt = send;
+        if (p.isHedging() && p.getHedgeMethods().contains(method)) {
+            attempt = () -> hedge(send);
+        }
+
+        var r = new CompletableFuture<HttpResponse<B>>();
+        attempt(1, method, attempt, r);
+        return r;
+    }
+
+    <B> void attempt(int n, @Nonnull String method, @Nonnull Supplier<CompletableFuture<HttpResponse<B>>> attempt,
+            @Nonnull CompletableFuture<HttpResponse<B>> result) {
+        long begin = System.nanoTime();
+
+        attempt.get().whenComplete((resp, ex) -> {
+            if (ex == null) {
+                this.latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+            }
+
+            if (n < getPolicy().getMaxAttempts() && shouldRetry(method, resp, ex)) {
+                long delay = backoff(n, resp);
+                if (delay >= 0 && withdraw()) {
+                    this.retries.incrementAndGet();
+                    if (resp != null) {
+                        discard(resp);
+                    }
+
+                    var delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                    delayed.execute(() -> attempt(n + 1, method, attempt, result));
+                    return;
+                }
+            }
+
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(resp);
+            }
+        });
+    }
+
+    boolean shouldRetry(@Nonnull String method, HttpResponse<?> resp, Throwable ex) {
+        var p = getPolicy();
+
+        if (ex == null) {
+            return p.getRetryStatuses().contains(resp.statusCode()) && p.getRetryMethods().contains(method);
+        }
+
+        var cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+        if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+            // never reached the server, so safe for any method
+            return true;
+        }
+        return cause instanceof IOException && p.getRetryMethods().contains(method);
+    }
+
+    /**
+     * Exponential backoff with jitter, at most {@link JsonAPIRetryPolicy#getMaxBackoffMillis()}; or the Retry-After of
+     * the response if longer, as given
+     *
+     * @return -1 if the Retry-After exceeds {@link JsonAPIRetryPolicy#getMaxRetryAfterMillis()}, so no retry
+     */
+    long backoff(int attempt, HttpResponse<?> resp) {
+        var p = getPolicy();
+
+        double base = p.getInitialBackoffMillis() * Math.pow(p.getBackoffMultiplier(), attempt - 1);
+        base = Math.min(base, p.getMaxBackoffMillis());
+        long r = (long) (base * (1 - p.getJitter() * ThreadLocalRandom.current().nextDouble()));
+
+        long retryAfter = (resp == null) ? -1 : retryAfterMillis(resp);
+        if (retryAfter < 0) {
+            return r;
+        }
+        if (retryAfter > p.getMaxRetryAfterMillis()) {
+            return -1;
+        }
+        return Math.max(r, retryAfter);
+    }
+
+    /**
+     * Retry-After in delay-seconds or http-date form
+     *
+     * @return -1 if absent or invalid
+     */
+    static long retryAfterMillis(@Nonnull HttpResponse<?> resp) {
+        var header = resp.headers().firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return -1;
+        }
+
+        var value = header.get().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // try http-date
+        }
+        try {
+            var at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return -1 if no hedging because too few samples observed
+     */
+    long hedgeDelay() {
+        var p = getPolicy();
+        if (p.getHedgeDelayMillis() > 0) {
+            return p.getHedgeDelayMillis();
+        }
+        return this.latencies.percentile(p.getHedgePercentile(), MIN_HEDGE_SAMPLES);
+    }
+
+    /**
+     * Sends a second request if the first one doesn't complete within {@link #hedgeDelay()}; the first response wins,
+     * the other one is discarded
+     */
+    @Nonnull
+    <B> CompletableFuture<HttpResponse<B>> hedge(@Nonnull Supplier<CompletableFuture<HttpResponse<B>>> send) {
+        var r = new CompletableFuture<HttpResponse<B>>();
+        var outstanding = new AtomicInteger(1);
+
+        hedgeAttempt(send, r, outstanding);
+
+        long delay = hedgeDelay();
+        if (delay >= 0) {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (r.isDone() || withdraw() == false) {
+                    return;
+                }
+                outstanding.incrementAndGet();
+                this.hedges.incrementAndGet();
+                hedgeAttempt(send, r, outstanding);
+            });
+        }
+        return r;
+    }
+
+    <B> void hedgeAttempt(@Nonnull Supplier<CompletableFuture<HttpResponse<B>>> send,
+            @Nonnull CompletableFuture<HttpResponse<B>> result, @Nonnull AtomicInteger outstanding) {
+        send.get().whenComplete((resp, ex) -> {
+            if (ex == null) {
+                if (result.complete(resp) == false) {
+                    discard(resp);
+                }
+                return;
+            }
+            if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(ex);
+            }
+        });
+    }
+
+    /**
+     * Releases the connection held by an unused response
+     */
+    public static void discard(@Nonnull HttpResponse<?> resp) {
+        var body = resp.body();
+        if (body instanceof InputStream) {
+            try {
+                ((InputStream) body).close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        } else if (body instanceof Flow.Publisher) {
+            ((Flow.Publisher<?>) body).subscribe(new Flow.Subscriber<Object>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.cancel();
+                }
+
+                @Override
+                public void onNext(Object item) {
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        }
+    }
+
+}
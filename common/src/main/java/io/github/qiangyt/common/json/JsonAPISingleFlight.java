@@ -0,0 +1,157 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Opt-in coalescing of identical concurrent {@link JsonAPI} calls, set by
+ * {@link JsonAPIConfig#setSingleFlight(JsonAPISingleFlight)}: while an exchange is in flight, the same call (same
+ * method, URI, headers, body and response type) shares it, and its deserialized result, instead of sending another
+ * request. The shared result must not be modified by callers.
+ *
+ * Only the given methods are coalesced, by default the safe ones.
+ */
+@Getter
+public class JsonAPISingleFlight {
+
+    @Nonnull
+    public static final Set<String> DEFAULT_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    @Getter
+    public static class Key {
+
+        @Nonnull
+        final String method;
+
+        @Nonnull
+        final URI uri;
+
+        @Nonnull
+        final Map<String, String> headers;
+
+        /** serialized request body, null if none */
+        final byte[] body;
+
+        @Nonnull
+        final JavaType type;
+
+        final int hash;
+
+        public Key(@Nonnull String method, @Nonnull URI uri, @Nonnull Map<String, String> headers, byte[] body,
+                @Nonnull JavaType type) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+            this.type = type;
+            this.hash = Objects.hash(method, uri, headers, Arrays.hashCode(body), type);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key == false) {
+                return false;
+            }
+
+            var that = (Key) obj;
+            return this.hash == that.hash && this.method.equals(that.method) && this.uri.equals(that.uri)
+                    && this.headers.equals(that.headers) && Arrays.equals(this.body, that.body)
+                    && this.type.equals(that.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+    @Nonnull
+    final Set<String> methods;
+
+    final Map<Key, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /** calls seen */
+    final AtomicLong calls = new AtomicLong();
+
+    /** calls that joined an in-flight exchange rather than sending a request */
+    final AtomicLong collapsed = new AtomicLong();
+
+    public JsonAPISingleFlight() {
+        this(DEFAULT_METHODS);
+    }
+
+    public JsonAPISingleFlight(@Nonnull Set<String> methods) {
+        this.methods = Set.copyOf(methods);
+    }
+
+    public boolean accept(@Nonnull String method) {
+        return this.methods.contains(method);
+    }
+
+    /**
+     * Joins the in-flight exchange of the key, or starts one by the call. Each caller gets its own copy of the shared
+     * future, so cancelling it doesn't affect the others
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    public <T> CompletableFuture<T> execute(@Nonnull Key key, @Nonnull Supplier<CompletableFuture<T>> call) {
+        this.calls.incrementAndGet();
+
+        var promise = new CompletableFuture<T>();
+        var existing = this.inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            this.collapsed.incrementAndGet();
+            return ((CompletableFuture<T>) existing).copy();
+        }
+
+        try {
+            call.get().whenComplete((r, ex) -> {
+                // removed first, so that calls arriving after completion send a new request
+                this.inFlight.remove(key, promise);
+                if (ex == null) {
+                    promise.complete(r);
+                } else {
+                    promise.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException e) {
+            this.inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+
+        return promise.copy();
+    }
+
+}
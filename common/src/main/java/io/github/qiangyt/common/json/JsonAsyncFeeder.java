@@ -0,0 +1,109 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Feeds byte chunks into Jackson's non-blocking parser and hands over each complete JSON value as a
+ * {@link TokenBuffer}, never waiting for more input. With unwrapArray, the elements of a root array are handed over one
+ * by one instead of the whole array.
+ */
+class JsonAsyncFeeder {
+
+    @Nonnull
+    final JsonParser parser;
+
+    @Nonnull
+    final ByteBufferFeeder feeder;
+
+    final boolean unwrapArray;
+
+    @Nonnull
+    final Consumer<TokenBuffer> consumer;
+
+    /** depth at which a value is complete: 1 inside an unwrapped root array, 0 otherwise */
+    int baseDepth;
+
+    int depth;
+
+    TokenBuffer current;
+
+    JsonAsyncFeeder(@Nonnull ObjectMapper mapper, boolean unwrapArray, @Nonnull Consumer<TokenBuffer> consumer)
+            throws IOException {
+        this.parser = mapper.getFactory().createNonBlockingByteBufferParser();
+        this.feeder = (ByteBufferFeeder) this.parser.getNonBlockingInputFeeder();
+        this.unwrapArray = unwrapArray;
+        this.consumer = consumer;
+    }
+
+    void feed(@Nonnull ByteBuffer buf) throws IOException {
+        this.feeder.feedInput(buf);
+        drain();
+    }
+
+    void end() throws IOException {
+        this.feeder.endOfInput();
+        drain();
+    }
+
+    void drain() throws IOException {
+        var p = this.parser;
+
+        JsonToken t;
+        while ((t = p.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+            if (this.unwrapArray && this.current == null) {
+                if (t == JsonToken.START_ARRAY && this.depth == 0) {
+                    this.depth = this.baseDepth = 1;
+                    continue;
+                }
+                if (t == JsonToken.END_ARRAY && this.depth == 1) {
+                    this.depth = this.baseDepth = 0;
+                    continue;
+                }
+            }
+
+            if (this.current == null) {
+                this.current = new TokenBuffer(p);
+            }
+            this.current.copyCurrentEvent(p);
+
+            if (t.isStructStart()) {
+                this.depth++;
+            } else if (t.isStructEnd()) {
+                this.depth--;
+            }
+
+            if (this.depth == this.baseDepth) {
+                var value = this.current;
+                this.current = null;
+                this.consumer.accept(value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.net.http.HttpResponse.BodySubscriber;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import io.github.qiangyt.common.err.BadStateException;
+import jakarta.annotation.Nonnull;
+
+/**
+ * Publishes the elements of a root JSON array (or the root value itself if it isn't an array) as soon as each one is
+ * complete. Byte chunks are requested from the http client only when the downstream subscriber has demand and all
+ * parsed elements are delivered, so memory stays bounded by about one chunk plus one element, whatever the body size.
+ *
+ * Supports a single subscriber. The connection is held until the subscriber cancels or consumes all the elements.
+ */
+public class JsonElementPublisher<T> implements BodySubscriber<Flow.Publisher<T>>, Flow.Publisher<T> {
+
+    @Nonnull
+    final ObjectMapper mapper;
+
+    @Nonnull
+    final JavaType elementType;
+
+    @Nonnull
+    final Queue<T> pending = new ConcurrentLinkedQueue<>();
+
+    final AtomicLong demand = new AtomicLong();
+
+    final AtomicInteger wip = new AtomicInteger();
+
+    /** whether a chunk has been requested from upstream but not received yet */
+    final AtomicBoolean upstreamRequested = new AtomicBoolean();
+
+    final AtomicReference<Flow.Subscriber<? super T>> downstream = new AtomicReference<>();
+
+    volatile Flow.Subscription upstream;
+
+    volatile boolean upstreamDone;
+
+    volatile boolean cancelled;
+
+    volatile Throwable error;
+
+    boolean terminated;
+
+    JsonAsyncFeeder feeder;
+
+    public JsonElementPublisher(@Nonnull ObjectMapper mapper, @Nonnull JavaType elementType) {
+        this.mapper = mapper;
+        this.elementType = elementType;
+    }
+
+    /**
+     * Publishes the elements of an in-memory body
+     */
+    @Nonnull
+    public static <T> JsonElementPublisher<T> of(@Nonnull ObjectMapper mapper, @Nonnull JavaType elementType,
+            @Nonnull byte[] body) {
+        var r = new JsonElementPublisher<T>(mapper, elementType);
+        r.onSubscribe(new Flow.Subscription() {
+            boolean fed;
+
+            @Override
+            public void request(long n) {
+                if (this.fed == false) {
+                    this.fed = true;
+                    r.onNext(List.of(ByteBuffer.wrap(body)));
+                    r.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                this.fed = true;
+            }
+        });
+        return r;
+    }
+
+    @Override
+    public CompletionStage<Flow.Publisher<T>> getBody() {
+        return CompletableFuture.completedFuture(this);
+    }
+
+    void bind(@Nonnull TokenBuffer tokens) {
+        try (var p = tokens.asParser()) {
+            T element = this.mapper.readValue(p, this.elementType);
+            this.pending.add(element);
+        } catch (Exception e) {
+            throw new BadStateException(e);
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        try {
+            this.feeder = new JsonAsyncFeeder(this.mapper, true, this::bind);
+        } catch (Exception e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+
+        this.upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (this.upstreamDone) {
+            return;
+        }
+
+        try {
+            for (var item : items) {
+                this.feeder.feed(item);
+            }
+        } catch (Exception e) {
+            this.upstream.cancel();
+            fail(e);
+            return;
+        }
+
+        this.upstreamRequested.set(false);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (this.upstreamDone) {
+            return;
+        }
+
+        try {
+            this.feeder.end();
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+
+        this.upstreamDone = true;
+        drain();
+    }
+
+    void fail(@Nonnull Throwable throwable) {
+        if (this.error == null) {
+            this.error = throwable;
+        }
+        this.upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (this.downstream.compareAndSet(null, subscriber) == false) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new BadStateException("only one subscriber is supported"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("non-positive request: " + n));
+                    return;
+                }
+                demand.getAndAccumulate(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+    }
+
+    void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        do {
+            var ds = this.downstream.get();
+            if (ds == null || this.terminated) {
+                continue;
+            }
+
+            if (this.cancelled) {
+                this.terminated = true;
+                this.pending.clear();
+                var up = this.upstream;
+                if (up != null && this.upstreamDone == false) {
+                    up.cancel();
+                }
+                continue;
+            }
+
+            T element;
+            while (this.demand.get() > 0 && (element = this.pending.poll()) != null) {
+                this.demand.decrementAndGet();
+                ds.onNext(element);
+            }
+
+            if (this.pending.isEmpty() == false) {
+                continue;
+            }
+
+            if (this.upstreamDone) {
+                this.terminated = true;
+                if (this.error != null) {
+                    ds.onError(this.error);
+                } else {
+                    ds.onComplete();
+                }
+                continue;
+            }
+
+            var up = this.upstream;
+            if (up != null && this.demand.get() > 0 && this.upstreamRequested.compareAndSet(false, true)) {
+                up.request(1);
+            }
+        } while (this.wip.decrementAndGet() != 0);
+    }
+
+}
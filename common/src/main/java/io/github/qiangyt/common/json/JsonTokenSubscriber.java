@@ -0,0 +1,108 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.net.http.HttpResponse.BodySubscriber;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Tokenizes the response body as it arrives, on the http client threads but without ever blocking them. The body is the
+ * tokens of the root value (null for an empty body), to be bound by
+ * {@link ObjectMapper#readValue( com.fasterxml.jackson.core.JsonParser, com.fasterxml.jackson.databind.JavaType)}
+ * wherever the caller likes.
+ */
+public class JsonTokenSubscriber implements BodySubscriber<TokenBuffer> {
+
+    @Nonnull
+    final ObjectMapper mapper;
+
+    @Nonnull
+    final CompletableFuture<TokenBuffer> result = new CompletableFuture<>();
+
+    JsonAsyncFeeder feeder;
+
+    TokenBuffer value;
+
+    Flow.Subscription subscription;
+
+    public JsonTokenSubscriber(@Nonnull ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public CompletionStage<TokenBuffer> getBody() {
+        return this.result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        try {
+            this.feeder = new JsonAsyncFeeder(this.mapper, false, tokens -> this.value = tokens);
+        } catch (Exception e) {
+            subscription.cancel();
+            this.result.completeExceptionally(e);
+            return;
+        }
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (this.result.isDone()) {
+            return;
+        }
+
+        try {
+            for (var item : items) {
+                this.feeder.feed(item);
+            }
+        } catch (Exception e) {
+            this.subscription.cancel();
+            this.result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (this.result.isDone()) {
+            return;
+        }
+
+        try {
+            this.feeder.end();
+            this.result.complete(this.value);
+        } catch (Exception e) {
+            this.result.completeExceptionally(e);
+        }
+    }
+
+}
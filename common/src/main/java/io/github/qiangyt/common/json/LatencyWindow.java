@@ -0,0 +1,72 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of the most recent latency samples, for percentile estimates. Thread-safe; a percentile costs a copy
+ * and a sort of the (small) window
+ */
+public class LatencyWindow {
+
+    public static final int DEFAULT_SIZE = 128;
+
+    final long[] samples;
+
+    int next;
+
+    int count;
+
+    public LatencyWindow() {
+        this(DEFAULT_SIZE);
+    }
+
+    public LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    public synchronized void record(long latencyMillis) {
+        this.samples[this.next] = latencyMillis;
+        this.next = (this.next + 1) % this.samples.length;
+        if (this.count < this.samples.length) {
+            this.count++;
+        }
+    }
+
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return -1 if less than minSamples recorded
+     */
+    public long percentile(double percentile, int minSamples) {
+        long[] copy;
+        synchronized (this) {
+            if (this.count < minSamples || this.count == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(this.samples, this.count);
+        }
+
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(index, copy.length - 1))];
+    }
+
+}
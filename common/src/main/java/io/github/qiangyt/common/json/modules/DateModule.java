@@ -55,7 +55,12 @@ public class DateModule {
 
         @Override
         protected Date deserialize(@Nonnull String text) throws Exception {
-            return new Date(Long.valueOf(text));
+            return new Date(Long.parseLong(text));
+        }
+
+        @Override
+        protected Date deserialize(long value) throws Exception {
+            return new Date(value);
         }
     }
 
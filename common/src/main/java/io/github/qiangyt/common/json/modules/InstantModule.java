@@ -57,6 +57,14 @@ public class InstantModule {
         protected Instant deserialize(@Nonnull String text) throws Exception {
             return Instant.parse(text);
         }
+
+        /**
+         * Epoch milliseconds, same as {@link DateModule}
+         */
+        @Override
+        protected Instant deserialize(long value) throws Exception {
+            return Instant.ofEpochMilli(value);
+        }
     }
 
 }
@@ -16,11 +16,8 @@
  */
 package io.github.qiangyt.common.json.modules;
 
-import java.util.HashMap;
-
 import org.buildobjects.process.ProcResult;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.err.BadValueException;
@@ -42,20 +39,14 @@ public class ProcResultModule {
 
     public static class Serializer extends JacksonSerializer<ProcResult> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
-
-        @Override
-        protected void dump(ProcResult value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("exitValue", value.getExitValue());
-            r.put("stdout", value.getOutputString());
-            r.put("stderr", value.getErrorString());
-            r.put("executionTime", value.getExecutionTime());
-            r.put("commandLine", value.getCommandLine());
+        @Nonnull
+        public static final Fields<ProcResult> FIELDS = new Fields<ProcResult>()
+                .add("exitValue", ProcResult::getExitValue).add("stdout", ProcResult::getOutputString)
+                .add("stderr", ProcResult::getErrorString).add("executionTime", ProcResult::getExecutionTime)
+                .add("commandLine", ProcResult::getCommandLine);
 
-            gen.writeObject(r);
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
     }
 
@@ -18,6 +18,7 @@ package io.github.qiangyt.common.misc;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -26,7 +27,7 @@ import static java.util.Objects.requireNonNull;
 
 import org.apache.commons.text.StringSubstitutor;
 
-import io.github.cdimascio.dotenv.Dotenv;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
@@ -34,11 +35,38 @@ public class EnvExpander {
 
     private static final ThreadLocal<EnvExpander> CURRENT = new ThreadLocal<>();
 
+    /**
+     * Fallback for the templates that {@link EnvTemplate} doesn't compile. Looks up the live variables, so never needs
+     * to be rebuilt
+     */
     @Nonnull
-    private StringSubstitutor substitutor;
+    private final StringSubstitutor substitutor;
+
+    /**
+     * The immutable layers and the variables set on top of them, published together so that a reader never sees one
+     * swapped without the other
+     */
+    static final class Layers {
+
+        /**
+         * extra → .env file → system environment → parent overrides, shared with the parent and siblings
+         */
+        final EnvLayer base;
+
+        /** Variables set on this expander, folded into {@link #base} when a child expander is created */
+        @Nonnull
+        final Map<String, String> overrides;
+
+        Layers(EnvLayer base, @Nonnull Map<String, String> overrides) {
+            this.base = base;
+            this.overrides = overrides;
+        }
+
+    }
 
     @Nonnull
-    private final Map<String, String> envVars;
+    @Getter(AccessLevel.NONE)
+    private volatile Layers layers;
 
     public EnvExpander() {
         this(true, true, null);
@@ -48,47 +76,91 @@ public class EnvExpander {
         this(true, true, extra);
     }
 
+    /**
+     * Costs O(1): shares the layers of the parent instead of copying its variables. Later changes of the parent are not
+     * visible to the child, and vice versa
+     */
     public EnvExpander(@Nonnull EnvExpander parent) {
-        this(false, false, parent.envVars);
+        this.layers = new Layers(parent.freeze(), new HashMap<>());
+        this.substitutor = new StringSubstitutor(this::get);
     }
 
+    /**
+     * The system environment shadows the .env file, which shadows the extra variables, the same as before layering. As
+     * the .env loader always included the system environment, loadDotEnv implies the system environment layer too.
+     */
     public EnvExpander(boolean loadDotEnv, boolean loadSystemEnv, Map<String, String> extra) {
-        this.envVars = (extra == null) ? new HashMap<>() : new HashMap<>(extra);
+        var layer = EnvLayer.of((extra == null) ? null : new HashMap<>(extra), null);
 
-        if (loadSystemEnv) {
-            this.envVars.putAll(System.getenv());
+        if (loadDotEnv) {
+            layer = EnvLayer.of(EnvLayer.dotEnv(), layer);
         }
 
-        if (loadDotEnv) {
-            var dotenv = Dotenv.configure().ignoreIfMissing().load();
-            for (var e : dotenv.entries()) {
-                this.envVars.put(e.getKey(), e.getValue());
-            }
+        if (loadSystemEnv || loadDotEnv) {
+            layer = EnvLayer.of(System.getenv(), layer);
         }
 
-        this.substitutor = new StringSubstitutor(this.envVars);
+        this.layers = new Layers(layer, new HashMap<>());
+        this.substitutor = new StringSubstitutor(this::get);
+    }
+
+    /**
+     * Turns current overrides into an immutable layer to be shared with a child, subsequent
+     * {@link #set(String, String)} writes to a new map
+     */
+    synchronized EnvLayer freeze() {
+        var l = this.layers;
+        if (l.overrides.isEmpty() == false) {
+            l = new Layers(new EnvLayer(l.overrides, l.base), new HashMap<>());
+            this.layers = l;
+        }
+        return l.base;
     }
 
     @Nonnull
-    public EnvExpander set(@Nonnull String var, String value) {
-        this.envVars.put(var, value);
-        this.substitutor = new StringSubstitutor(this.envVars);
+    public synchronized EnvExpander set(@Nonnull String var, String value) {
+        this.layers.overrides.put(var, value);
+        return this;
+    }
 
+    @Nonnull
+    public synchronized EnvExpander set(@Nonnull Map<String, String> vars) {
+        this.layers.overrides.putAll(vars);
         return this;
     }
 
+    /**
+     * Flattened copy of all visible variables, costs O(all variables). Changes to the copy don't reach this expander,
+     * use {@link #set(String, String)} instead
+     */
     @Nonnull
-    public EnvExpander set(@Nonnull Map<String, String> vars) {
-        this.envVars.putAll(vars);
-        this.substitutor = new StringSubstitutor(this.envVars);
+    public Map<String, String> getEnvVars() {
+        var l = this.layers;
+        var r = new HashMap<String, String>();
+        if (l.base != null) {
+            l.base.collect(r);
+        }
+        r.putAll(l.overrides);
+        return r;
+    }
 
-        return this;
+    public String get(@Nonnull String var) {
+        var l = this.layers;
+        var r = l.overrides.get(var);
+        if (r != null || l.overrides.containsKey(var) || l.base == null) {
+            return r;
+        }
+        return l.base.get(var);
     }
 
     public static void setCurrent(@Nonnull EnvExpander expander) {
         CURRENT.set(expander);
     }
 
+    public static void clearCurrent() {
+        CURRENT.remove();
+    }
+
     public static EnvExpander getCurrent() {
         return CURRENT.get();
     }
@@ -100,7 +172,18 @@ public class EnvExpander {
         return inst.expand(input);
     }
 
+    /**
+     * Allocation-free check, to skip expansion of the most strings that have no variable
+     */
+    public static boolean hasPlaceholder(@Nonnull String input) {
+        return input.indexOf("${") >= 0;
+    }
+
     public static String tryExpands(@Nonnull String input) {
+        if (hasPlaceholder(input) == false) {
+            return input;
+        }
+
         var inst = CURRENT.get();
         if (inst == null) {
             return input;
@@ -118,8 +201,23 @@ public class EnvExpander {
         return inst.expand(input);
     }
 
+    /**
+     * Strings without placeholder are returned as is after a single scan; others are parsed once into a (cached)
+     * template, so repeated expansions only look up variables and concatenate
+     */
     public @Nonnull String expand(@Nonnull String input) {
-        return requireNonNull(getSubstitutor().replace(input));
+        if (hasPlaceholder(input) == false) {
+            return input;
+        }
+
+        var template = EnvTemplate.get(input);
+        if (template.isCompiled() == false) {
+            return requireNonNull(this.substitutor.replace(input));
+        }
+
+        var r = new StringBuilder(input.length() + 32);
+        template.render(r, this::get, this.substitutor::replace, new HashSet<>());
+        return r.toString();
     }
 
     public @Nonnull String expand(@Nonnull String text, Function<String, String> func) {
@@ -0,0 +1,119 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.misc;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Immutable layer of environment variables, on top of an optional lower layer. Variables in upper layer shadow the same
+ * ones in lower layers. The maps are never modified once wrapped into a layer, so they're shared by all chains built on
+ * them.
+ */
+@Getter
+final class EnvLayer {
+
+    static final String DOTENV_DIRECTORY = "./";
+
+    static final String DOTENV_FILENAME = ".env";
+
+    static final Map<String, DotEnv> DOTENVS = new ConcurrentHashMap<>();
+
+    @Getter
+    static class DotEnv {
+
+        final long lastModified;
+
+        @Nonnull
+        final Map<String, String> vars;
+
+        DotEnv(long lastModified, @Nonnull Map<String, String> vars) {
+            this.lastModified = lastModified;
+            this.vars = vars;
+        }
+
+    }
+
+    @Nonnull
+    final Map<String, String> vars;
+
+    final EnvLayer lower;
+
+    EnvLayer(@Nonnull Map<String, String> vars, EnvLayer lower) {
+        this.vars = vars;
+        this.lower = lower;
+    }
+
+    static EnvLayer of(Map<String, String> vars, EnvLayer lower) {
+        if (vars == null || vars.isEmpty()) {
+            return lower;
+        }
+        return new EnvLayer(vars, lower);
+    }
+
+    String get(@Nonnull String name) {
+        for (var layer = this; layer != null; layer = layer.lower) {
+            var r = layer.vars.get(name);
+            if (r != null || layer.vars.containsKey(name)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    void collect(@Nonnull Map<String, String> out) {
+        if (this.lower != null) {
+            this.lower.collect(out);
+        }
+        out.putAll(this.vars);
+    }
+
+    /**
+     * Variables declared in the .env file of current directory, parsed once per file modification time
+     */
+    @Nonnull
+    static Map<String, String> dotEnv() {
+        return dotEnv(DOTENV_DIRECTORY, DOTENV_FILENAME);
+    }
+
+    @Nonnull
+    static Map<String, String> dotEnv(@Nonnull String directory, @Nonnull String filename) {
+        var file = new File(directory, filename).getAbsoluteFile();
+        long lastModified = file.lastModified();
+
+        return DOTENVS.compute(file.getPath(), (path, existing) -> {
+            if (existing != null && existing.lastModified == lastModified) {
+                return existing;
+            }
+
+            var dotenv = Dotenv.configure().directory(directory).filename(filename).ignoreIfMissing().load();
+            var vars = new HashMap<String, String>();
+            for (var e : dotenv.entries(Dotenv.Filter.DECLARED_IN_ENV_FILE)) {
+                vars.put(e.getKey(), e.getValue());
+            }
+            return new DotEnv(lastModified, Collections.unmodifiableMap(vars));
+        }).vars;
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.github.qiangyt.common.err.BadValueException;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Pre-parsed form of a string with ${VAR} / ${VAR:-default} placeholders, compatible with the default
+ * {@link org.apache.commons.text.StringSubstitutor} syntax: '$' escapes a placeholder, unresolved placeholders are kept
+ * as is, resolved values are expanded recursively.
+ *
+ * Placeholders nested in a variable name or default value are not compiled ({@link #isCompiled()} is false), the caller
+ * falls back to {@link org.apache.commons.text.StringSubstitutor} for them.
+ */
+@Getter
+class EnvTemplate {
+
+    static final int CACHE_SIZE = 4096;
+
+    static final Cache<String, EnvTemplate> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    static final String PREFIX = "${";
+
+    static final char SUFFIX = '}';
+
+    static final char ESCAPE = '$';
+
+    static final String VALUE_DELIMITER = ":-";
+
+    @Getter
+    static class Variable {
+
+        @Nonnull
+        final String name;
+
+        final String defaultValue;
+
+        /** the original placeholder text, kept if the variable is unresolved */
+        @Nonnull
+        final String raw;
+
+        Variable(@Nonnull String name, String defaultValue, @Nonnull String raw) {
+            this.name = name;
+            this.defaultValue = defaultValue;
+            this.raw = raw;
+        }
+
+    }
+
+    /** literal segments (String) and variable references (Variable), in order */
+    final Object[] parts;
+
+    final boolean compiled;
+
+    EnvTemplate(Object[] parts, boolean compiled) {
+        this.parts = parts;
+        this.compiled = compiled;
+    }
+
+    @Nonnull
+    static EnvTemplate get(@Nonnull String text) {
+        var r = CACHE.getIfPresent(text);
+        if (r == null) {
+            r = parse(text);
+            CACHE.put(text, r);
+        }
+        return r;
+    }
+
+    @Nonnull
+    static EnvTemplate parse(@Nonnull String text) {
+        List<Object> parts = new ArrayList<>();
+        var literal = new StringBuilder();
+
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            int begin = text.indexOf(PREFIX, i);
+            if (begin < 0) {
+                literal.append(text, i, len);
+                break;
+            }
+
+            literal.append(text, i, begin);
+
+            if (begin > 0 && text.charAt(begin - 1) == ESCAPE) {
+                // escaped placeholder: drop the escape char, keep the prefix as literal
+                literal.setLength(literal.length() - 1);
+                literal.append(PREFIX);
+                i = begin + PREFIX.length();
+                continue;
+            }
+
+            int nameBegin = begin + PREFIX.length();
+            int end = text.indexOf(SUFFIX, nameBegin);
+            if (end < 0) {
+                // unterminated, so not a placeholder
+                literal.append(text, begin, len);
+                break;
+            }
+
+            var expr = text.substring(nameBegin, end);
+            if (expr.contains(PREFIX)) {
+                return new EnvTemplate(null, false);
+            }
+
+            if (literal.length() > 0) {
+                parts.add(literal.toString());
+                literal.setLength(0);
+            }
+
+            var raw = text.substring(begin, end + 1);
+            int delim = expr.indexOf(VALUE_DELIMITER);
+            if (delim < 0) {
+                parts.add(new Variable(expr, null, raw));
+            } else {
+                parts.add(
+                        new Variable(expr.substring(0, delim), expr.substring(delim + VALUE_DELIMITER.length()), raw));
+            }
+
+            i = end + 1;
+        }
+
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+
+        return new EnvTemplate(parts.toArray(), true);
+    }
+
+    /**
+     * @param resolving
+     *            names of the variables being resolved, to detect cyclic references
+     */
+    void render(@Nonnull StringBuilder out, @Nonnull Function<String, String> lookup,
+            @Nonnull Function<String, String> expander, @Nonnull Set<String> resolving) {
+        for (var part : this.parts) {
+            if (part instanceof String) {
+                out.append((String) part);
+                continue;
+            }
+
+            var v = (Variable) part;
+            var value = lookup.apply(v.name);
+            if (value == null) {
+                value = v.defaultValue;
+            }
+            if (value == null) {
+                out.append(v.raw);
+                continue;
+            }
+
+            if (EnvExpander.hasPlaceholder(value) == false) {
+                out.append(value);
+                continue;
+            }
+
+            if (resolving.add(v.name) == false) {
+                throw new BadValueException("cyclic variable reference: %s", resolving);
+            }
+
+            var nested = get(value);
+            if (nested.isCompiled()) {
+                nested.render(out, lookup, expander, resolving);
+            } else {
+                out.append(expander.apply(value));
+            }
+
+            resolving.remove(v.name);
+        }
+    }
+
+}
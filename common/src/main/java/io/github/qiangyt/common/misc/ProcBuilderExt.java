@@ -63,7 +63,8 @@ public class ProcBuilderExt extends ProcBuilder {
         super(envExpander.expand(command), envExpander.expand(requireNonNull(args)));
 
         this.envExpander = envExpander;
-        withVars(envExpander.getEnvVars());
+        // not withVars(), which would set every variable on the expander back as an override
+        super.withVars(envExpander.getEnvVars());
     }
 
     @Override
@@ -18,6 +18,8 @@ package io.github.qiangyt.common.misc;
 
 import com.google.common.collect.Lists;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Objects;
 
@@ -94,6 +96,14 @@ public class StringHelper {
         return r.toString();
     }
 
+    /**
+     * URL编码，用于路径段和查询参数：UTF-8，空格编码为%20而不是+
+     */
+    @Nonnull
+    public static String urlEncode(@Nonnull Object value) {
+        return URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
     /**
      * 是否是null或全是空白字符串
      */
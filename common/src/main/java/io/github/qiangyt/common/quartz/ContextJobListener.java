@@ -0,0 +1,66 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.quartz;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+
+import io.github.qiangyt.common.bean.ContextSnapshot;
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Binds a {@link ContextSnapshot} to the quartz worker thread while a job is executing
+ */
+@Getter
+public class ContextJobListener implements JobListener {
+
+    public static final String NAME = ContextJobListener.class.getName();
+
+    static final String SCOPE_KEY = NAME + ".scope";
+
+    @Nonnull
+    final ContextSnapshot context;
+
+    public ContextJobListener(@Nonnull ContextSnapshot context) {
+        this.context = context;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void jobToBeExecuted(JobExecutionContext ctx) {
+        ctx.put(SCOPE_KEY, this.context.attach());
+    }
+
+    @Override
+    public void jobExecutionVetoed(JobExecutionContext ctx) {
+    }
+
+    @Override
+    public void jobWasExecuted(JobExecutionContext ctx, JobExecutionException jobException) {
+        var scope = (ContextSnapshot.Scope) ctx.get(SCOPE_KEY);
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+}
@@ -22,7 +22,9 @@ import org.quartz.impl.StdSchedulerFactory;
 
 import io.github.qiangyt.common.bean.WrapperBean;
 import io.github.qiangyt.common.bean.BeanContainer;
+import io.github.qiangyt.common.bean.ContextSnapshot;
 import io.github.qiangyt.common.err.BadStateException;
+import io.github.qiangyt.common.misc.EnvExpander;
 import jakarta.annotation.Nonnull;
 
 public class SchedulerBean extends WrapperBean<Scheduler> {
@@ -33,6 +35,9 @@ public class SchedulerBean extends WrapperBean<Scheduler> {
 
     @Override
     public void doInit() throws Exception {
+        var ctx = new ContextSnapshot(EnvExpander.getCurrent(), getBeanMetadata().getContainer());
+        getInstance().getListenerManager().addJobListener(new ContextJobListener(ctx));
+
         getInstance().start();
     }
 
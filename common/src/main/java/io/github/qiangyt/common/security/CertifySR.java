@@ -23,6 +23,9 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import org.shredzone.acme4j.util.CSRBuilder;
 
@@ -66,7 +69,7 @@ public class CertifySR implements Dumpable {
     @SuppressWarnings({ "null", "unchecked" })
     public @Nonnull Map<String, Object> toMap(Map<Object, Object> visited) {
         if (visited == null) {
-            visited = new HashMap<>();
+            visited = Dumpable.newVisited();
         }
 
         return (Map<String, Object>) visited.computeIfAbsent(this, k -> {
@@ -77,6 +80,14 @@ public class CertifySR implements Dumpable {
         });
     }
 
+    @Override
+    public void dumpTo(@Nonnull JsonGenerator gen, Set<Object> dumping) throws IOException {
+        Dumpable.dumpObject(this, gen, dumping, d -> {
+            Dumpable.writeField(gen, "text", getText(), d);
+            Dumpable.writeField(gen, "encoded", Codec.encodeHex(getEncoded()), d);
+        });
+    }
+
     @Override
     public String toString() {
         return requireNonNull(dumpAsYaml(null));
@@ -16,11 +16,8 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.util.HashMap;
-
 import org.shredzone.acme4j.Account;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -31,20 +28,13 @@ public class AccountModule {
 
     public static class Serializer extends JacksonSerializer<Account> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
+        @Nonnull
+        public static final Fields<Account> FIELDS = new Fields<Account>().add("location", Account::getLocation)
+                .add("keyIdentifier", Account::getKeyIdentifier).add("status", Account::getStatus)
+                .add("contact", Account::getContacts).add("termsOfServiceAgreed", Account::getTermsOfServiceAgreed);
 
-        @Override
-        protected void dump(Account value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("location", value.getLocation());
-            r.put("keyIdentifier", value.getKeyIdentifier());
-            r.put("status", value.getStatus());
-            r.put("contact", value.getContacts());
-            r.put("termsOfServiceAgreed", value.getTermsOfServiceAgreed());
-
-            gen.writeObject(r);
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
     }
 
@@ -16,11 +16,8 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.util.HashMap;
-
 import org.shredzone.acme4j.Authorization;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -31,23 +28,15 @@ public class AuthorizationModule {
 
     public static class Serializer extends JacksonSerializer<Authorization> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
-
-        @Override
-        protected void dump(Authorization value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("identifier", value.getIdentifier());
-            r.put("expires", value.getExpires());
-            r.put("location", value.getLocation());
-            r.put("wirdcard", value.isWildcard());
-            r.put("status", value.getStatus());
-
-            gen.writeObject(r);
+        @Nonnull
+        public static final Fields<Authorization> FIELDS = new Fields<Authorization>()
+                .add("identifier", Authorization::getIdentifier).add("expires", Authorization::getExpires)
+                .add("location", Authorization::getLocation).add("wirdcard", Authorization::isWildcard)
+                .add("status", Authorization::getStatus);
 
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
-
     }
 
     public static class Deserializer extends JacksonDeserializer<Authorization> {
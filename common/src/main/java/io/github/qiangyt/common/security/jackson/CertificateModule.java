@@ -16,11 +16,10 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.util.HashMap;
-
 import org.shredzone.acme4j.Certificate;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.err.BadValueException;
@@ -33,26 +32,20 @@ public class CertificateModule {
 
     public static class Serializer extends JacksonSerializer<Certificate> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
-
-        @Override
-        protected void dump(Certificate value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("location", value.getLocation());
-            // r.put("alternateCertificates", value.getAlternateCertificates());
-            r.put("alternates", value.getAlternates());
-            r.put("certificateChain", value.getCertificateChain());
-            r.put("certificate", value.getCertificate());
-            r.put("text", KeysHelper.writeCertificate(value));
-
-            gen.writeObject(r);
+        @Nonnull
+        public static final Fields<Certificate> FIELDS = new Fields<Certificate>()
+                .add("location", Certificate::getLocation)
+                // .add("alternateCertificates", Certificate::getAlternateCertificates)
+                .add("alternates", Certificate::getAlternates).add("certificateChain", Certificate::getCertificateChain)
+                .add("certificate", Certificate::getCertificate).add("text", KeysHelper::writeCertificate);
 
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
 
         @Override
-        protected void serialize(Certificate value, @Nonnull JsonGenerator gen) throws Exception {
+        protected void serializeValue(Certificate value, @Nonnull JsonGenerator gen,
+                @Nonnull SerializerProvider provider) throws Exception {
             var text = KeysHelper.writeCertificate(value);
             gen.writeString(text);
         }
@@ -16,11 +16,8 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.util.HashMap;
-
 import org.shredzone.acme4j.challenge.Dns01Challenge;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -31,22 +28,15 @@ public class Dns01ChallengeModule {
 
     public static class Serializer extends JacksonSerializer<Dns01Challenge> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
+        @Nonnull
+        public static final Fields<Dns01Challenge> FIELDS = new Fields<Dns01Challenge>()
+                .add("authorization", Dns01Challenge::getAuthorization).add("digest", Dns01Challenge::getDigest)
+                .add("error", Dns01Challenge::getError).add("location", Dns01Challenge::getLocation)
+                .add("type", Dns01Challenge::getType).add("validated", Dns01Challenge::getValidated)
+                .add("status", Dns01Challenge::getStatus);
 
-        @Override
-        protected void dump(Dns01Challenge value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("authorization", value.getAuthorization());
-            r.put("digest", value.getDigest());
-            r.put("error", value.getError());
-            r.put("location", value.getLocation());
-            r.put("type", value.getType());
-            r.put("validated", value.getValidated());
-            r.put("status", value.getStatus());
-
-            gen.writeObject(r);
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
     }
 
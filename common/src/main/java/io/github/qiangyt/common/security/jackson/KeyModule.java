@@ -17,9 +17,7 @@
 package io.github.qiangyt.common.security.jackson;
 
 import java.security.Key;
-import java.util.HashMap;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -31,19 +29,12 @@ public class KeyModule {
 
     public static class Serializer extends JacksonSerializer<Key> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
-
-        @Override
-        protected void dump(Key value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("algorithm", value.getAlgorithm());
-            r.put("format", value.getFormat());
-            r.put("encoded", Codec.bytesToPem(value.getEncoded(), null));
-
-            gen.writeObject(r);
+        @Nonnull
+        public static final Fields<Key> FIELDS = new Fields<Key>().add("algorithm", Key::getAlgorithm)
+                .add("format", Key::getFormat).add("encoded", v -> Codec.bytesToPem(v.getEncoded(), null));
 
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
     }
 
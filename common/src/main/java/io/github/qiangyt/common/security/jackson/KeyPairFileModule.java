@@ -16,14 +16,10 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
-import io.github.qiangyt.common.err.BadValueException;
 import io.github.qiangyt.common.json.JacksonDeserializer;
 import io.github.qiangyt.common.json.JacksonSerializer;
 import io.github.qiangyt.common.security.KeyPairFile;
@@ -33,27 +29,19 @@ public class KeyPairFileModule {
 
     public static class Serializer extends JacksonSerializer<KeyPairFile> {
 
+        @Nonnull
+        public static final Fields<KeyPairFile> FIELDS = new Fields<KeyPairFile>().add("file", KeyPairFile::getFile)
+                .add("content", KeyPairFile::getContent, new KeyPairModule.Serializer(true));
+
         public Serializer(boolean dump) {
-            super(dump);
+            super(dump, FIELDS);
         }
 
         @Override
-        protected void serialize(@Nonnull KeyPairFile value, @Nonnull JsonGenerator gen) throws Exception {
+        protected void serializeValue(@Nonnull KeyPairFile value, @Nonnull JsonGenerator gen,
+                @Nonnull SerializerProvider provider) throws Exception {
             gen.writeString(value.getFile());
         }
-
-        @Override
-        protected void dump(@Nonnull KeyPairFile value, @Nonnull JsonGenerator gen) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("file", value.getFile());
-            map.put("content", KeyPairModule.Serializer.staticDump(value.getContent()));
-
-            try {
-                gen.writeObject(map);
-            } catch (IOException e) {
-                throw new BadValueException(e);
-            }
-        }
     }
 
     public static class Deserializer extends JacksonDeserializer<KeyPairFile> {
@@ -18,12 +18,12 @@ package io.github.qiangyt.common.security.jackson;
 
 import java.io.StringWriter;
 import java.security.KeyPair;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.shredzone.acme4j.util.KeyPairUtils;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -35,12 +35,17 @@ public class KeyPairModule {
 
     public static class Serializer extends JacksonSerializer<KeyPair> {
 
+        @Nonnull
+        public static final Fields<KeyPair> FIELDS = new Fields<KeyPair>().add("private", KeyPair::getPrivate)
+                .add("public", KeyPair::getPublic);
+
         public Serializer(boolean dump) {
-            super(dump);
+            super(dump, FIELDS);
         }
 
         @Override
-        protected void serialize(@Nonnull KeyPair value, @Nonnull JsonGenerator gen) throws Exception {
+        protected void serializeValue(@Nonnull KeyPair value, @Nonnull JsonGenerator gen,
+                @Nonnull SerializerProvider provider) throws Exception {
             staticSerialize(value, gen);
         }
 
@@ -51,23 +56,9 @@ public class KeyPairModule {
             gen.writeString(w.toString());
         }
 
-        @Override
-        protected void dump(@Nonnull KeyPair value, @Nonnull JsonGenerator gen) throws Exception {
-            gen.writeObject(staticDump(value));
-        }
-
-        public static Map<String, Object> staticDump(@Nonnull KeyPair value) {
-            var r = new HashMap<String, Object>();
-
-            if (value == null) {
-                r.put("private", null);
-                r.put("public", null);
-            } else {
-                r.put("private", value.getPrivate());
-                r.put("public", value.getPublic());
-            }
-
-            return r;
+        @Nonnull
+        public static Map<String, Object> staticDump(KeyPair value) {
+            return FIELDS.toMap(value);
         }
     }
 
@@ -16,11 +16,8 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.util.HashMap;
-
 import org.shredzone.acme4j.Order;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -31,36 +28,23 @@ public class OrderModule {
 
     public static class Serializer extends JacksonSerializer<Order> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
-
-        @Override
-        protected void dump(Order value, @Nonnull JsonGenerator gen) throws Exception {
-
-            var r = new HashMap<String, Object>();
-            r.put("location", value.getLocation());
-            r.put("status", value.getStatus());
-            r.put("certificate", value.getCertificate());
-            r.put("expires", value.getExpires());
-            r.put("authorizations", value.getAuthorizations());
-            r.put("autoRenewalCertificate", value.getAutoRenewalCertificate());
-            r.put("autoRenewalEndDate", value.getAutoRenewalEndDate());
-            r.put("autoRenewalLifetimeAdjust", value.getAutoRenewalLifetimeAdjust());
-            r.put("autoRenewalStartDate", value.getAutoRenewalStartDate());
-            r.put("autoRenewalLifetime", value.getAutoRenewalLifetime());
-            r.put("autoRenewalGetEnabled", value.isAutoRenewalGetEnabled());
-            r.put("autoRenewing", value.isAutoRenewing());
-            r.put("error", value.getError());
-            r.put("finalizeLocation", value.getFinalizeLocation());
-            r.put("identifiers", value.getIdentifiers());
-            r.put("notBefore", value.getNotBefore());
-            r.put("notAfter", value.getNotAfter());
-
-            gen.writeObject(r);
+        @Nonnull
+        public static final Fields<Order> FIELDS = new Fields<Order>().add("location", Order::getLocation)
+                .add("status", Order::getStatus).add("certificate", Order::getCertificate)
+                .add("expires", Order::getExpires).add("authorizations", Order::getAuthorizations)
+                .add("autoRenewalCertificate", Order::getAutoRenewalCertificate)
+                .add("autoRenewalEndDate", Order::getAutoRenewalEndDate)
+                .add("autoRenewalLifetimeAdjust", Order::getAutoRenewalLifetimeAdjust)
+                .add("autoRenewalStartDate", Order::getAutoRenewalStartDate)
+                .add("autoRenewalLifetime", Order::getAutoRenewalLifetime)
+                .add("autoRenewalGetEnabled", Order::isAutoRenewalGetEnabled).add("autoRenewing", Order::isAutoRenewing)
+                .add("error", Order::getError).add("finalizeLocation", Order::getFinalizeLocation)
+                .add("identifiers", Order::getIdentifiers).add("notBefore", Order::getNotBefore)
+                .add("notAfter", Order::getNotAfter);
 
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
-
     }
 
     public static class Deserializer extends JacksonDeserializer<Order> {
@@ -17,9 +17,7 @@
 package io.github.qiangyt.common.security.jackson;
 
 import java.security.Principal;
-import java.util.HashMap;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -30,18 +28,12 @@ public class PrincipalModule {
 
     public static class Serializer extends JacksonSerializer<Principal> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
-
-        @Override
-        protected void dump(Principal value, @Nonnull JsonGenerator gen) throws Exception {
-            var r = new HashMap<String, Object>();
-            r.put("name", value.getName());
-            r.put("toString", value.toString());
-
-            gen.writeObject(r);
+        @Nonnull
+        public static final Fields<Principal> FIELDS = new Fields<Principal>().add("name", Principal::getName)
+                .add("toString", Principal::toString);
 
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
     }
 
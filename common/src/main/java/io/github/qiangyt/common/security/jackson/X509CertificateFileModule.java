@@ -16,10 +16,8 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import io.github.qiangyt.common.json.JacksonDeserializer;
@@ -31,23 +29,20 @@ public class X509CertificateFileModule {
 
     public static class Serializer extends JacksonSerializer<X509CertificateFile> {
 
+        @Nonnull
+        public static final Fields<X509CertificateFile> FIELDS = new Fields<X509CertificateFile>()
+                .add("file", X509CertificateFile::getFile)
+                .add("content", X509CertificateFile::getContent, new X509CertificateModule.Serializer(true));
+
         public Serializer(boolean dump) {
-            super(dump);
+            super(dump, FIELDS);
         }
 
         @Override
-        protected void serialize(@Nonnull X509CertificateFile value, @Nonnull JsonGenerator gen) throws Exception {
+        protected void serializeValue(@Nonnull X509CertificateFile value, @Nonnull JsonGenerator gen,
+                @Nonnull SerializerProvider provider) throws Exception {
             gen.writeString(value.getFile());
         }
-
-        @Override
-        protected void dump(@Nonnull X509CertificateFile value, @Nonnull JsonGenerator gen) throws Exception {
-            Map<String, Object> map = new HashMap<>();
-            map.put("file", value.getFile());
-            map.put("content", X509CertificateModule.Serializer.staticDump(value.getContent()));
-
-            gen.writeObject(map);
-        }
     }
 
     public static class Deserializer extends JacksonDeserializer<X509CertificateFile> {
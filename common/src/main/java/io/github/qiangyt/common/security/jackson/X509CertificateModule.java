@@ -16,15 +16,11 @@
  */
 package io.github.qiangyt.common.security.jackson;
 
-import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
 import java.util.Map;
 
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
-import io.github.qiangyt.common.err.BadStateException;
 import io.github.qiangyt.common.json.JacksonDeserializer;
 import io.github.qiangyt.common.json.JacksonSerializer;
 import io.github.qiangyt.common.misc.Codec;
@@ -36,46 +32,35 @@ public class X509CertificateModule {
 
     public static class Serializer extends JacksonSerializer<X509Certificate> {
 
-        public Serializer(boolean dump) {
-            super(dump);
-        }
+        @Nonnull
+        public static final Fields<X509Certificate> FIELDS = new Fields<X509Certificate>()
+                .add("notBefore", X509Certificate::getNotBefore).add("notAfter", X509Certificate::getNotAfter)
+                .add("serialNumber", X509Certificate::getSerialNumber)
+                .add("signature", v -> Codec.bytesToBase64(v.getSignature())).add("type", X509Certificate::getType)
+                .add("version", X509Certificate::getVersion).add("publicKey", X509Certificate::getPublicKey)
+                .add("sigAlgName", X509Certificate::getSigAlgName).add("sigAlgOID", X509Certificate::getSigAlgOID)
+                .add("sigAlgParams", v -> Codec.bytesToBase64(v.getSigAlgParams()))
+                .add("TBSCertificate", v -> Codec.bytesToBase64(v.getTBSCertificate()))
+                .add("subjectUniqueID", X509Certificate::getSubjectUniqueID)
+                .add("subjectX500Principal", X509Certificate::getSubjectX500Principal)
+                .add("basicConstraints", X509Certificate::getBasicConstraints)
+                .add("extendedKeyUsage", X509Certificate::getExtendedKeyUsage)
+                .add("criticalExtensionOIDs", X509Certificate::getCriticalExtensionOIDs)
+                .add("issuerAlternativeNames", X509Certificate::getIssuerAlternativeNames)
+                .add("issuerUniqueID", v -> StringHelper.toString(v.getIssuerUniqueID()))
+                .add("issuerX500Principal", X509Certificate::getIssuerX500Principal)
+                .add("nonCriticalExtensionOIDs", X509Certificate::getNonCriticalExtensionOIDs)
+                .add("keyUsage", X509Certificate::getKeyUsage)
+                .add("subjectAlternativeNames", X509Certificate::getSubjectAlternativeNames)
+                .add("encoded", v -> Codec.bytesToPem(v.getEncoded(), null));
 
-        @Override
-        protected void dump(X509Certificate value, @Nonnull JsonGenerator gen) throws Exception {
-            var map = staticDump(value);
-            gen.writeObject(map);
+        public Serializer(boolean dump) {
+            super(dump, FIELDS);
         }
 
+        @Nonnull
         public static Map<String, Object> staticDump(X509Certificate value) {
-            var r = new HashMap<String, Object>();
-            try {
-                r.put("notBefore", value.getNotBefore());
-                r.put("notAfter", value.getNotAfter());
-                r.put("serialNumber", value.getSerialNumber());
-                r.put("signature", Codec.bytesToBase64(value.getSignature()));
-                r.put("type", value.getType());
-                r.put("version", value.getVersion());
-                r.put("publicKey", value.getPublicKey());
-                r.put("sigAlgName", value.getSigAlgName());
-                r.put("sigAlgOID", value.getSigAlgOID());
-                r.put("sigAlgParams", Codec.bytesToBase64(value.getSigAlgParams()));
-                r.put("TBSCertificate", Codec.bytesToBase64(value.getTBSCertificate()));
-                r.put("subjectUniqueID", value.getSubjectUniqueID());
-                r.put("subjectX500Principal", value.getSubjectX500Principal());
-                r.put("basicConstraints", value.getBasicConstraints());
-                r.put("extendedKeyUsage", value.getExtendedKeyUsage());
-                r.put("criticalExtensionOIDs", value.getCriticalExtensionOIDs());
-                r.put("issuerAlternativeNames", value.getIssuerAlternativeNames());
-                r.put("issuerUniqueID", StringHelper.toString(value.getIssuerUniqueID()));
-                r.put("issuerX500Principal", value.getIssuerX500Principal());
-                r.put("nonCriticalExtensionOIDs", value.getNonCriticalExtensionOIDs());
-                r.put("keyUsage", value.getKeyUsage());
-                r.put("subjectAlternativeNames", value.getSubjectAlternativeNames());
-                r.put("encoded", Codec.bytesToPem(value.getEncoded(), null));
-            } catch (CertificateException e) {
-                throw new BadStateException(e);
-            }
-            return r;
+            return FIELDS.toMap(value);
         }
     }
 
@@ -0,0 +1,86 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.bean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.qiangyt.common.misc.EnvExpander;
+
+public class ContextSnapshotTest {
+
+	@Test
+	public void test_wrapExecutor() throws Exception {
+		var expander = new EnvExpander(false, false, Map.of("A", "a"));
+		var container = new BeanContainer("test", false);
+
+		var executor = ContextSnapshot.wrapExecutor(Executors.newSingleThreadExecutor());
+		try {
+			EnvExpander.setCurrent(expander);
+			BeanContainer.setCurrent(container);
+			try {
+				var expanded = executor.submit(() -> EnvExpander.expands("${A}"));
+				assertEquals("a", expanded.get());
+
+				var current = executor.submit(() -> (BeanContainer) BeanContainer.getCurrent());
+				assertSame(container, current.get());
+			} finally {
+				EnvExpander.clearCurrent();
+				BeanContainer.clearCurrent();
+			}
+
+			// restored after the task, and nothing to carry now
+			assertNull(executor.submit(() -> EnvExpander.getCurrent()).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void test_wrapExecutor_noContext() throws Exception {
+		var leftover = new EnvExpander(false, false, Map.of());
+		var pool = Executors.newSingleThreadExecutor();
+		var executor = ContextSnapshot.wrapExecutor(pool);
+		try {
+			// a task that leaves its expander bound on the worker thread
+			pool.submit(() -> EnvExpander.setCurrent(leftover)).get();
+
+			assertNull(executor.submit(() -> EnvExpander.getCurrent()).get());
+			assertSame(leftover, pool.submit(() -> EnvExpander.getCurrent()).get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void test_attach() {
+		var expander = new EnvExpander(false, false, Map.of());
+		var ctx = new ContextSnapshot(expander, null);
+
+		try (var scope = ctx.attach()) {
+			assertSame(expander, EnvExpander.getCurrent());
+		}
+		assertNull(EnvExpander.getCurrent());
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.bean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class DumpableTest {
+
+	public static class Sample extends MutableBean {
+
+		@Override
+		public boolean equals(Object obj) {
+			throw new IllegalStateException("equals() should not be called");
+		}
+
+		@Override
+		public int hashCode() {
+			throw new IllegalStateException("hashCode() should not be called");
+		}
+
+	}
+
+	@Test
+	public void test_toMap() {
+		var t = new Sample();
+		t.setId("a");
+		t.setCreatedAt(new Date(123L));
+		t.setVersion(2);
+
+		var visited = Dumpable.newVisited();
+		var map = t.toMap(visited);
+
+		assertEquals("a", map.get("id"));
+		assertEquals(123, ((Number) map.get("createdAt")).longValue());
+		assertEquals(2, map.get("version"));
+
+		assertSame(map, t.toMap(visited));
+	}
+
+	public static class Custom implements Dumpable {
+
+		@Override
+		public Map<String, Object> toMap(Map<Object, Object> visited) {
+			return Map.of("custom", true);
+		}
+
+	}
+
+	@Test
+	public void test_dumpTo() {
+		var t = new Sample();
+		t.setId("a");
+
+		var json = t.dumpAsJson();
+		assertTrue(json.contains("\"id\" : \"a\""), json);
+
+		// SnakeYAML, as before streaming
+		var yaml = t.dumpAsYaml();
+		assertTrue(yaml.contains("id: a"), yaml);
+		assertFalse(yaml.startsWith("---"), yaml);
+
+		assertTrue(new Custom().dumpAsString(Dumpable.Format.JSON).contains("\"custom\" : true"));
+	}
+
+	public static class Node implements Dumpable {
+
+		Node next;
+
+		String name;
+
+		@Override
+		public void dumpTo(JsonGenerator gen, Set<Object> dumping) throws IOException {
+			Dumpable.dumpObject(this, gen, dumping, d -> {
+				Dumpable.writeField(gen, "name", this.name, d);
+				Dumpable.writeField(gen, "next", this.next, d);
+			});
+		}
+
+	}
+
+	@Test
+	public void test_dumpTo_nestedCycle() {
+		var a = new Node();
+		var b = new Node();
+		a.next = b;
+		b.next = a;
+		b.name = "b";
+
+		var json = a.dumpAsString(Dumpable.Format.JSON);
+		assertTrue(json.contains("\"next\" : \"<cyclic reference: " + Node.class.getName() + ">\""), json);
+		assertEquals(1, json.split("\"name\"").length - 1, json);
+	}
+
+}
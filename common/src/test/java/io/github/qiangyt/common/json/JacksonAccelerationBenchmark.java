@@ -0,0 +1,82 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.qiangyt.common.json.JacksonFormatBenchmark.Payload;
+
+/**
+ * Reflection vs. Blackbird-accelerated bean property access, see {@link Jackson#accelerate()}.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.github.qiangyt.common.json.JacksonAccelerationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonAccelerationBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean accelerate;
+
+	Jackson jackson;
+
+	Payload payload;
+
+	byte[] encoded;
+
+	@Setup
+	public void setup() {
+		this.jackson = new Jackson(Jackson.buildDefaultMapper(false, false, this.accelerate));
+		this.payload = Payload.sample(100);
+		this.encoded = this.jackson.toBytes(this.payload);
+	}
+
+	@Benchmark
+	public byte[] serialize() {
+		return this.jackson.toBytes(this.payload);
+	}
+
+	@Benchmark
+	public Payload deserialize() {
+		return this.jackson.from(this.encoded, Payload.class);
+	}
+
+	public static void main(String[] args) throws Exception {
+		var options = new OptionsBuilder().include(JacksonAccelerationBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
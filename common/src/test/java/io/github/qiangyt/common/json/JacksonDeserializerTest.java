@@ -0,0 +1,120 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import io.github.qiangyt.common.json.modules.InstantModule;
+import io.github.qiangyt.common.misc.EnvExpander;
+
+public class JacksonDeserializerTest {
+
+	public static class Tagged {
+
+		final String tag;
+
+		Tagged(String tag) {
+			this.tag = tag;
+		}
+
+	}
+
+	static class TextOnly extends JacksonDeserializer<Tagged> {
+
+		TextOnly(boolean expandEnv) {
+			super(expandEnv);
+		}
+
+		@Override
+		protected Tagged deserialize(String text) {
+			return new Tagged("string:" + text);
+		}
+
+	}
+
+	static class Numeric extends TextOnly {
+
+		Numeric() {
+			super(false);
+		}
+
+		@Override
+		protected Tagged deserialize(long value) {
+			return new Tagged("long:" + value);
+		}
+
+		@Override
+		protected Tagged deserialize(double value) {
+			return new Tagged("double:" + value);
+		}
+
+	}
+
+	static String read(JacksonDeserializer<Tagged> deserializer, String json) throws Exception {
+		var mapper = new ObjectMapper().registerModule(new SimpleModule().addDeserializer(Tagged.class, deserializer));
+		return mapper.readValue(json, Tagged.class).tag;
+	}
+
+	@Test
+	public void test_tokens_textOnly() throws Exception {
+		var d = new TextOnly(false);
+		assertEquals("string:abc", read(d, "\"abc\""));
+		assertEquals("string:123", read(d, "123"));
+		assertEquals("string:1.5", read(d, "1.5"));
+		// neither string nor number
+		assertEquals("string:true", read(d, "true"));
+	}
+
+	@Test
+	public void test_tokens_numeric() throws Exception {
+		var d = new Numeric();
+		assertEquals("string:abc", read(d, "\"abc\""));
+		assertEquals("long:123", read(d, "123"));
+		assertEquals("double:1.5", read(d, "1.5"));
+		// beyond long
+		assertEquals("string:123456789012345678901234567890", read(d, "123456789012345678901234567890"));
+	}
+
+	@Test
+	public void test_tokens_expandEnv() throws Exception {
+		EnvExpander.setCurrent(new EnvExpander(false, false, Map.of("A", "a")));
+		try {
+			assertEquals("string:a-b", read(new TextOnly(true), "\"${A}-b\""));
+			assertEquals("string:${A}", read(new TextOnly(false), "\"${A}\""));
+		} finally {
+			EnvExpander.clearCurrent();
+		}
+	}
+
+	@Test
+	public void test_instant() throws Exception {
+		var mapper = new ObjectMapper().registerModule(InstantModule.build(false, false));
+		var instant = Instant.ofEpochMilli(1700000000123L);
+
+		assertEquals(instant, mapper.readValue("1700000000123", Instant.class));
+		assertEquals(instant, mapper.readValue("\"2023-11-14T22:13:20.123Z\"", Instant.class));
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.github.qiangyt.common.bean.MutableBean;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Size and throughput of text JSON vs. Smile vs. CBOR, all built through {@link Jackson#initDefaultMapper}.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.github.qiangyt.common.json.JacksonFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonFormatBenchmark {
+
+	@Getter
+	@Setter
+	public static class Item extends MutableBean {
+
+		String name;
+
+		URI location;
+
+		File file;
+
+		InetSocketAddress address;
+
+		Instant expires;
+
+		List<String> tags;
+
+	}
+
+	@Getter
+	@Setter
+	public static class Payload extends MutableBean {
+
+		List<Item> items;
+
+		public static Payload sample(int count) {
+			var r = new Payload();
+			r.setId("payload");
+			r.setCreatedAt(new Date(1_700_000_000_000L));
+			r.setUpdatedAt(new Date(1_700_000_100_000L));
+			r.setVersion(7);
+
+			var items = new ArrayList<Item>(count);
+			for (int i = 0; i < count; i++) {
+				var item = new Item();
+				item.setId("item-" + i);
+				item.setCreatedAt(new Date(1_700_000_000_000L + i));
+				item.setUpdatedAt(new Date(1_700_000_000_000L + i * 2));
+				item.setVersion(i);
+				item.setName("name of item " + i);
+				item.setLocation(URI.create("https://example.com/items/" + i));
+				item.setFile(new File("/var/data/items/" + i + ".json"));
+				item.setAddress(InetSocketAddress.createUnresolved("10.0.0." + (i % 255), 8000 + i));
+				item.setExpires(Instant.ofEpochSecond(1_700_000_000L + i));
+				item.setTags(List.of("alpha", "beta", "tag-" + i));
+				items.add(item);
+			}
+			r.setItems(items);
+
+			return r;
+		}
+	}
+
+	@Param({ "JSON", "SMILE", "CBOR" })
+	public String format;
+
+	Jackson jackson;
+
+	Payload payload;
+
+	byte[] encoded;
+
+	static Jackson jackson(String format) {
+		switch (format) {
+		case "SMILE":
+			return Jackson.SMILE;
+		case "CBOR":
+			return Jackson.CBOR;
+		default:
+			return Jackson.DEFAULT;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		this.jackson = jackson(this.format);
+		this.payload = Payload.sample(100);
+		this.encoded = this.jackson.toBytes(this.payload);
+	}
+
+	@Benchmark
+	public byte[] serialize() {
+		return this.jackson.toBytes(this.payload);
+	}
+
+	@Benchmark
+	public Payload deserialize() {
+		return this.jackson.from(this.encoded, Payload.class);
+	}
+
+	public static void main(String[] args) throws Exception {
+		var payload = Payload.sample(100);
+		for (var format : new String[] { "JSON", "SMILE", "CBOR" }) {
+			var bytes = jackson(format).toBytes(payload);
+			System.out.printf("%-6s %8d bytes%n", format, bytes.length);
+		}
+
+		var options = new OptionsBuilder().include(JacksonFormatBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+public class JsonAPICompressionTest {
+
+	static byte[] inflate(byte[] compressed, int chunkSize) {
+		var s = new JsonAPICompression.InflatingSubscriber<>(HttpResponse.BodySubscribers.ofByteArray(), true);
+		s.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+
+		for (int i = 0; i < compressed.length; i += chunkSize) {
+			s.onNext(List.of(ByteBuffer.wrap(compressed, i, Math.min(chunkSize, compressed.length - i))));
+		}
+		s.onComplete();
+		return s.getBody().toCompletableFuture().join();
+	}
+
+	@Test
+	public void test_gzip_chunked() {
+		var text = "{\"a\":\"" + "x".repeat(50000) + "\"}";
+		var compressed = JsonAPICompression.gzip(text.getBytes(StandardCharsets.UTF_8));
+
+		// header and trailer split across chunks
+		assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), inflate(compressed, 3));
+		assertEquals(text, new String(inflate(compressed, compressed.length), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void test_truncated() {
+		var compressed = JsonAPICompression.gzip("{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+		var truncated = new byte[compressed.length - 12];
+		System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+		assertThrows(CompletionException.class, () -> inflate(truncated, 3));
+	}
+
+}
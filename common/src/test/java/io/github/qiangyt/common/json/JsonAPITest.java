@@ -0,0 +1,821 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.qiangyt.common.err.BadStateException;
+
+public class JsonAPITest {
+
+	HttpServer server;
+
+	JsonAPIConfig config;
+
+	final AtomicInteger flakyCalls = new AtomicInteger();
+
+	final AtomicInteger slowCalls = new AtomicInteger();
+
+	final AtomicInteger cachedCalls = new AtomicInteger();
+
+	final AtomicInteger herdCalls = new AtomicInteger();
+
+	final Map<String, AtomicInteger> throttledCalls = new ConcurrentHashMap<>();
+
+	final AtomicInteger itemsInFlight = new AtomicInteger();
+
+	final AtomicInteger maxItemsInFlight = new AtomicInteger();
+
+	static void reply(HttpExchange exchange, int statusCode, String body) throws IOException {
+		var bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		try (var out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/echo", exchange -> {
+			var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			reply(exchange, 200, "{\"method\":\"" + exchange.getRequestMethod() + "\",\"body\":\"" + body.length()
+					+ "\",\"query\":\"" + exchange.getRequestURI().getRawQuery() + "\"}");
+		});
+		this.server.createContext("/list", exchange -> {
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, 0);
+			try (var out = exchange.getResponseBody()) {
+				out.write("[".getBytes(StandardCharsets.UTF_8));
+				for (int i = 0; i < 100; i++) {
+					out.write(((i > 0 ? "," : "") + "{\"i\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+					out.flush();
+				}
+				out.write("]".getBytes(StandardCharsets.UTF_8));
+			}
+		});
+		this.server.createContext("/flaky", exchange -> {
+			if (this.flakyCalls.incrementAndGet() <= 2) {
+				reply(exchange, 503, "{}");
+			} else {
+				reply(exchange, 200, "{\"ok\":true}");
+			}
+		});
+		this.server.createContext("/slow", exchange -> {
+			if (this.slowCalls.incrementAndGet() == 1) {
+				try {
+					Thread.sleep(2000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			reply(exchange, 200, "{\"ok\":true}");
+		});
+		this.server.createContext("/cached", exchange -> {
+			this.cachedCalls.incrementAndGet();
+			var maxAge = exchange.getRequestURI().getQuery();
+			exchange.getResponseHeaders().add("Cache-Control", "max-age=" + maxAge);
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+			} else {
+				reply(exchange, 200, "{\"v\":1}");
+			}
+		});
+		this.server.createContext("/herd", exchange -> {
+			this.herdCalls.incrementAndGet();
+			try {
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			reply(exchange, 200, "{\"ok\":true}");
+		});
+		this.server.createContext("/compressed", exchange -> {
+			var reqHeaders = exchange.getRequestHeaders();
+			var in = exchange.getRequestBody();
+			var reqEncoding = reqHeaders.getFirst("Content-Encoding");
+			if ("gzip".equals(reqEncoding)) {
+				in = new GZIPInputStream(in);
+			}
+			var size = in.readAllBytes().length;
+
+			var body = ("{\"accept\":\"" + reqHeaders.getFirst("Accept") + "\",\"encoding\":\"" + reqEncoding
+					+ "\",\"size\":" + size + ",\"padding\":\"" + "x".repeat(10000) + "\"}")
+					.getBytes(StandardCharsets.UTF_8);
+			var deflate = "deflate".equals(exchange.getRequestURI().getQuery());
+			var out = new ByteArrayOutputStream();
+			try (var z = deflate ? new DeflaterOutputStream(out) : new GZIPOutputStream(out)) {
+				z.write(body);
+			}
+
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.getResponseHeaders().add("Content-Encoding", deflate ? "deflate" : "gzip");
+			exchange.sendResponseHeaders(200, out.size());
+			try (var o = exchange.getResponseBody()) {
+				o.write(out.toByteArray());
+			}
+		});
+		this.server.createContext("/item/", exchange -> {
+			this.maxItemsInFlight.accumulateAndGet(this.itemsInFlight.incrementAndGet(), Math::max);
+			try {
+				var path = exchange.getRequestURI().getPath();
+				var i = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+				Thread.sleep((i * 7) % 20);
+				this.itemsInFlight.decrementAndGet();
+				reply(exchange, (i == 13) ? 503 : 200, "{\"i\":" + i + "}");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		this.server.createContext("/pages/", exchange -> {
+			// 25 items, 10 per page
+			var style = exchange.getRequestURI().getPath().substring("/pages/".length());
+			var m = Pattern.compile("(cursor|offset|from)=(\\d+)").matcher(String.valueOf(exchange.getRequestURI()));
+			int from = m.find() ? Integer.parseInt(m.group(2)) : 0;
+			int to = Math.min(from + 10, 25);
+			var items = IntStream.range(from, to).mapToObj(i -> "{\"i\":" + i + "}").collect(Collectors.joining(","));
+
+			if ("cursor".equals(style)) {
+				var next = (to < 25) ? "\"" + to + "\"" : "null";
+				// the pager skips what is neither the items nor the cursor
+				reply(exchange, 200, "{\"meta\":{\"total\":25,\"next\":" + next + "},\"links\":[{\"data\":[]}],\"data\":["
+						+ items + "]}");
+				return;
+			}
+			if ("link".equals(style) && to < 25) {
+				exchange.getResponseHeaders().add("Link",
+						"</pages/link?from=" + to + ">; rel=\"next\", </pages/link>; rel=first");
+			}
+			reply(exchange, 200, "[" + items + "]");
+		});
+		this.server.createContext("/throttled", exchange -> {
+			// only the first call of each Retry-After value is throttled
+			var retryAfter = exchange.getRequestURI().getQuery();
+			if (this.throttledCalls.computeIfAbsent(retryAfter, k -> new AtomicInteger()).incrementAndGet() == 1) {
+				exchange.getResponseHeaders().add("Retry-After", retryAfter);
+				reply(exchange, 429, "{}");
+			} else {
+				reply(exchange, 200, "{\"ok\":true}");
+			}
+		});
+		this.server.createContext("/fail", exchange -> reply(exchange, 503, "{\"error\":\"unavailable\"}"));
+		this.server.setExecutor(Executors.newCachedThreadPool());
+		this.server.start();
+
+		this.config = new JsonAPIConfig("http://127.0.0.1:" + this.server.getAddress().getPort());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.server.stop(0);
+	}
+
+	@Test
+	public void test_sync() {
+		var api = new JsonAPI(this.config, "/echo");
+
+		var r = api.POST(Map.of("a", 1), new TypeReference<Map<String, String>>() {
+		});
+		assertEquals("POST", r.get("method"));
+		assertEquals("7", r.get("body"));
+	}
+
+	@Test
+	public void test_sharedClient() {
+		// distinct client settings from other tests, so the pool entry is owned by this test only
+		this.config.setConnectTimeoutSeconds(7);
+		HttpClient client;
+		try (var a = new JsonAPI(this.config, "/echo"); var b = new JsonAPI(this.config, "/fail")) {
+			client = a.getClient();
+			assertSame(client, b.getClient());
+		}
+
+		// released by both, so a new client
+		try (var c = new JsonAPI(this.config, "/echo")) {
+			assertNotSame(client, c.getClient());
+		}
+	}
+
+	@Test
+	public void test_async() {
+		var api = new JsonAPI(this.config, "/echo");
+
+		var r = api.GETAsync(new TypeReference<Map<String, String>>() {
+		}).join();
+		assertEquals("GET", r.get("method"));
+	}
+
+	@Test
+	public void test_concurrent() {
+		var api = new JsonAPI(this.config, "/echo");
+		var type = new TypeReference<Map<String, String>>() {
+		};
+
+		var futures = new ArrayList<CompletableFuture<JsonAPIResult<Map<String, String>>>>();
+		for (int i = 0; i < 20; i++) {
+			var method = (i % 2 == 0) ? "PUT" : "PATCH";
+			var body = "x".repeat(i);
+			futures.add(CompletableFuture.supplyAsync(() -> api.exchange(method, body, type)));
+		}
+
+		for (int i = 0; i < 20; i++) {
+			var result = futures.get(i).join();
+			assertEquals(200, result.getStatusCode());
+			assertEquals((i % 2 == 0) ? "PUT" : "PATCH", result.getBody().get("method"));
+			// quoted json string
+			assertEquals(String.valueOf(i + 2), result.getBody().get("body"));
+		}
+	}
+
+	@Test
+	public void test_errorBody() {
+		this.config.setMaxErrorBodySize(5);
+
+		var texts = new ArrayList<String>();
+		var api = new JsonAPI(this.config, "/fail", new JsonAPIErrorHandler() {
+			@Override
+			public void on5xxResponse(JsonAPIResult<?> result, JsonAPI api) {
+				texts.add(result.getErrorBody());
+			}
+		});
+
+		// the whole body is still deserialized after the handler read the head of it
+		var r = api.exchange("GET", null, Map.class);
+		assertEquals(List.of("{\"err..."), texts);
+		assertEquals(503, r.getStatusCode());
+		assertEquals("unavailable", r.getBody().get("error"));
+	}
+
+	@Test
+	public void test_errorBody_afterExchange() {
+		this.config.setMaxErrorBodySize(5);
+
+		var api = new JsonAPI(this.config, "/fail", new JsonAPIErrorHandler() {
+			@Override
+			public void on5xxResponse(JsonAPIResult<?> result, JsonAPI api) {
+				// neither throws nor reads the error body
+			}
+		});
+
+		var r = api.exchange("GET", null, Map.class);
+		assertEquals("unavailable", r.getBody().get("error"));
+		assertNull(r.getErrorBody());
+
+		var reading = new JsonAPI(this.config, "/fail", new JsonAPIErrorHandler() {
+			@Override
+			public void on5xxResponse(JsonAPIResult<?> result, JsonAPI api) {
+				result.getErrorBody();
+			}
+		});
+
+		r = reading.exchange("GET", null, Map.class);
+		assertEquals("unavailable", r.getBody().get("error"));
+		assertEquals("{\"err...", r.getErrorBody());
+	}
+
+	@Test
+	public void test_errorHandler_legacyHook() {
+		var codes = new ArrayList<Integer>();
+		var api = new JsonAPI(this.config, "/fail", new JsonAPIErrorHandler() {
+			@SuppressWarnings("deprecation")
+			@Override
+			public void on5xxResponse(int statusCode, JsonAPI api) {
+				codes.add(statusCode);
+			}
+		});
+
+		assertEquals(503, api.exchange("GET", null, Map.class).getStatusCode());
+		assertEquals(List.of(503), codes);
+	}
+
+	@Test
+	public void test_streamAsync() throws Exception {
+		var api = new JsonAPI(this.config, "/list");
+
+		var publisher = api.streamAsync("GET", null, new TypeReference<Map<String, Integer>>() {
+		}).join();
+
+		var received = new ArrayList<Integer>();
+		var done = new CompletableFuture<Void>();
+		publisher.subscribe(new Flow.Subscriber<Map<String, Integer>>() {
+			Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(Map<String, Integer> item) {
+				received.add(item.get("i"));
+				this.subscription.request(1);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				done.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				done.complete(null);
+			}
+		});
+
+		done.get(10, TimeUnit.SECONDS);
+		assertEquals(100, received.size());
+		assertEquals(99, received.get(99));
+	}
+
+	@Test
+	public void test_retry() {
+		var policy = new JsonAPIRetryPolicy();
+		policy.setInitialBackoffMillis(1);
+		this.config.setRetryPolicy(policy);
+
+		// not idempotent, so not retried
+		var post = new JsonAPI(this.config, "/flaky");
+		assertThrows(BadStateException.class, () -> post.POST(Map.class));
+		assertEquals(0, post.getRetryer().getRetries().get());
+
+		// the second call fails once more
+		var get = new JsonAPI(this.config, "/flaky");
+		assertEquals(true, get.GET(Map.class).get("ok"));
+		assertEquals(1, get.getRetryer().getRetries().get());
+		assertEquals(3, this.flakyCalls.get());
+	}
+
+	@Test
+	public void test_retry_retryAfter() {
+		var policy = new JsonAPIRetryPolicy();
+		policy.setInitialBackoffMillis(1);
+		policy.setMaxBackoffMillis(10);
+		policy.setMaxRetryAfterMillis(5000);
+		this.config.setRetryPolicy(policy);
+
+		// waited for as given, beyond the max backoff
+		long begin = System.currentTimeMillis();
+		assertEquals(true, new JsonAPI(this.config, "/throttled?1").GET(Map.class).get("ok"));
+		assertTrue(System.currentTimeMillis() - begin >= 1000);
+		assertEquals(2, this.throttledCalls.get("1").get());
+
+		// too long to wait for, so given up at once
+		begin = System.currentTimeMillis();
+		var api = new JsonAPI(this.config, "/throttled?30");
+		var ex = assertThrows(BadStateException.class, () -> api.GET(Map.class));
+		assertTrue(ex.getMessage().contains("429"), ex.getMessage());
+		assertTrue(System.currentTimeMillis() - begin < 5000);
+		assertEquals(1, this.throttledCalls.get("30").get());
+	}
+
+	@Test
+	public void test_exchange_streaming() {
+		var bodies = new ArrayList<Object>();
+		var api = new JsonAPI(this.config, "/list") {
+			@Override
+			protected <T> T readBody(Object body, ObjectReader reader) {
+				bodies.add(body);
+				return super.readBody(body, reader);
+			}
+		};
+
+		var r = api.exchange("GET", null, new TypeReference<List<Map<String, Integer>>>() {
+		});
+		assertEquals(100, r.getBody().size());
+		assertInstanceOf(InputStream.class, bodies.get(0));
+	}
+
+	@Test
+	public void test_hedging() {
+		var policy = new JsonAPIRetryPolicy();
+		policy.setHedging(true);
+		policy.setHedgeDelayMillis(50);
+		this.config.setRetryPolicy(policy);
+
+		var api = new JsonAPI(this.config, "/slow");
+
+		long begin = System.currentTimeMillis();
+		assertEquals(true, api.GET(Map.class).get("ok"));
+		assertTrue(System.currentTimeMillis() - begin < 1500);
+		assertEquals(1, api.getRetryer().getHedges().get());
+	}
+
+	@Test
+	public void test_responseCache_fresh() {
+		this.config.setResponseCache(new JsonAPICache());
+		var api = new JsonAPI(this.config, "/cached?60");
+
+		assertEquals(1, api.GET(Map.class).get("v"));
+		assertEquals(1, api.GET(Map.class).get("v"));
+		assertEquals(1, this.cachedCalls.get());
+		assertEquals(1, this.config.getResponseCache().getHits().get());
+	}
+
+	@Test
+	public void test_responseCache_revalidate() {
+		var cache = new JsonAPICache(1024 * 1024, true);
+		this.config.setResponseCache(cache);
+		var api = new JsonAPI(this.config, "/cached?0");
+
+		var first = api.GET(Map.class);
+		var second = api.GET(Map.class);
+		assertEquals(2, this.cachedCalls.get());
+		assertEquals(1, cache.getRevalidations().get());
+		// deserialized once
+		assertSame(first, second);
+
+		// not cached
+		assertEquals("POST", new JsonAPI(this.config, "/echo").POST(Map.class).get("method"));
+		assertEquals(1, cache.getMisses().get());
+	}
+
+	@Test
+	public void test_singleFlight() {
+		var singleFlight = new JsonAPISingleFlight();
+		this.config.setSingleFlight(singleFlight);
+		var api = new JsonAPI(this.config, "/herd");
+
+		var futures = new ArrayList<CompletableFuture<Map>>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(api.GETAsync(Map.class));
+		}
+		var first = futures.get(0).join();
+		for (var f : futures) {
+			assertSame(first, f.join());
+		}
+
+		assertEquals(1, this.herdCalls.get());
+		assertEquals(10, singleFlight.getCalls().get());
+		assertEquals(9, singleFlight.getCollapsed().get());
+
+		// completed, so a new exchange
+		api.GET(Map.class);
+		assertEquals(2, this.herdCalls.get());
+	}
+
+	@Test
+	public void test_singleFlight_serializesOnce() {
+		this.config.setSingleFlight(new JsonAPISingleFlight(Set.of("POST")));
+
+		var serialized = new AtomicInteger();
+		var api = new JsonAPI(this.config, "/echo") {
+			@Override
+			protected byte[] serializeBody(Object requestBody) {
+				if (requestBody instanceof JsonAPIBody == false) {
+					serialized.incrementAndGet();
+				}
+				return super.serializeBody(requestBody);
+			}
+		};
+
+		assertEquals("7", api.POST(Map.of("a", 1), Map.class).get("body"));
+		assertEquals(1, serialized.get());
+	}
+
+	@Test
+	public void test_limit_bulkhead() {
+		var policy = new JsonAPILimitPolicy();
+		policy.setMaxConcurrency(1);
+		this.config.setLimitPolicy(policy);
+		var api = new JsonAPI(this.config, "/herd");
+
+		var first = api.GETAsync(Map.class);
+		// rejected at once, no queue
+		var ex = assertThrows(CompletionException.class, () -> api.GETAsync(Map.class).join());
+		assertInstanceOf(BadStateException.class, ex.getCause());
+
+		assertEquals(true, first.join().get("ok"));
+		var limiter = JsonAPILimiter.of(policy, api.getUri());
+		assertEquals(1, limiter.getRejected().get());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void test_limit_rate() {
+		var policy = new JsonAPILimitPolicy();
+		policy.setRatePerSecond(10);
+		policy.setBurst(1);
+		policy.setMaxQueueSize(10);
+		this.config.setLimitPolicy(policy);
+		var api = new JsonAPI(this.config, "/echo");
+
+		long begin = System.currentTimeMillis();
+		var futures = new ArrayList<CompletableFuture<Map>>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(api.GETAsync(Map.class));
+		}
+		futures.forEach(CompletableFuture::join);
+		// 1 at once, then 1 per 100ms
+		assertTrue(System.currentTimeMillis() - begin >= 250);
+	}
+
+	@Test
+	public void test_limit_adaptive() {
+		var policy = new JsonAPILimitPolicy();
+		policy.setAdaptive(true);
+		policy.setAdaptiveInitialLimit(4);
+		this.config.setLimitPolicy(policy);
+		var api = new JsonAPI(this.config, "/fail");
+
+		for (int i = 0; i < 3; i++) {
+			assertThrows(BadStateException.class, () -> api.GET(Map.class));
+		}
+		// 503 is an overload signal
+		assertTrue(JsonAPILimiter.of(policy, api.getUri()).getLimit() < 4);
+	}
+
+	@Test
+	public void test_circuitBreaker() throws InterruptedException {
+		var policy = new JsonAPICircuitBreakerPolicy();
+		policy.setWindowSize(4);
+		policy.setMinCalls(2);
+		policy.setOpenMillis(200);
+		policy.setHalfOpenProbes(1);
+		this.config.setCircuitBreakerPolicy(policy);
+		var fail = new JsonAPI(this.config, "/fail");
+		var echo = new JsonAPI(this.config, "/echo");
+		var breaker = JsonAPICircuitBreaker.of(policy, fail.getUri());
+
+		assertThrows(BadStateException.class, () -> fail.GET(Map.class));
+		assertThrows(BadStateException.class, () -> fail.GET(Map.class));
+		assertEquals(JsonAPICircuitBreaker.State.OPEN, breaker.getState());
+
+		// same endpoint, short-circuited
+		var ex = assertThrows(BadStateException.class, () -> echo.GET(Map.class));
+		assertTrue(ex.getMessage().contains("OPEN"), ex.getMessage());
+		assertEquals(1, breaker.getNotPermitted().get());
+
+		// a failed probe opens it again
+		Thread.sleep(250);
+		assertEquals(JsonAPICircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertThrows(BadStateException.class, () -> fail.GET(Map.class));
+		assertEquals(JsonAPICircuitBreaker.State.OPEN, breaker.getState());
+
+		// a successful probe closes it
+		Thread.sleep(250);
+		assertEquals("GET", echo.GET(Map.class).get("method"));
+		assertEquals(JsonAPICircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(2, breaker.getOpened().get());
+	}
+
+	@Test
+	public void test_endpoints_roundRobin() {
+		int port = this.server.getAddress().getPort();
+		var cfg = new JsonAPIConfig(
+				List.of(URI.create("http://127.0.0.1:" + port), URI.create("http://localhost:" + port)));
+		var api = new JsonAPI(cfg, "/echo");
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("GET", api.GET(Map.class).get("method"));
+		}
+		for (var ep : api.getEndpoints().getEndpoints()) {
+			assertEquals(2, ep.getRequests().get());
+		}
+	}
+
+	@Test
+	public void test_endpoints_failover() throws IOException {
+		int deadPort;
+		try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			deadPort = socket.getLocalPort();
+		}
+
+		var cfg = new JsonAPIConfig(List.of(URI.create("http://127.0.0.1:" + deadPort),
+				URI.create("http://127.0.0.1:" + this.server.getAddress().getPort())));
+		cfg.setBalancer(JsonAPIBalancer.LEAST_OUTSTANDING);
+		cfg.setEjectAfterFailures(1);
+		var policy = new JsonAPIRetryPolicy();
+		policy.setInitialBackoffMillis(1);
+		cfg.setRetryPolicy(policy);
+		var api = new JsonAPI(cfg, "/echo");
+
+		// connection refused, retried on the other endpoint
+		for (int i = 0; i < 4; i++) {
+			assertEquals("GET", api.GET(Map.class).get("method"));
+		}
+
+		var dead = api.getEndpoints().getEndpoints().get(0);
+		assertEquals(1, dead.getRequests().get());
+		assertEquals(1, dead.getEjections().get());
+		assertEquals(4, api.getEndpoints().getEndpoints().get(1).getRequests().get());
+	}
+
+	@Test
+	public void test_endpoint_failurePenalty() {
+		var ep = new JsonAPIEndpoint(0, URI.create("http://localhost"), 3, 1000);
+		ep.onComplete(50, false);
+
+		// fails fast, but not consecutively enough to be ejected
+		ep.onComplete(1, true);
+		ep.onComplete(1, true);
+		ep.onComplete(50, false);
+		assertTrue(ep.getEwmaMillis() > 50, String.valueOf(ep.getEwmaMillis()));
+		assertTrue(ep.isAvailable(System.currentTimeMillis()));
+	}
+
+	@Test
+	public void test_compression() {
+		this.config.setRequestCompressionThreshold(100);
+		var api = new JsonAPI(this.config, "/compressed");
+		assertEquals(JsonAPICompression.ACCEPT_ENCODING, api.getHeaders().get("Accept-Encoding"));
+
+		var r = api.POST("y".repeat(1000), Map.class);
+		assertEquals("application/json", r.get("accept"));
+		assertEquals("gzip", r.get("encoding"));
+		assertEquals(1002, r.get("size"));
+		assertEquals(10000, ((String) r.get("padding")).length());
+
+		// below the threshold
+		assertEquals("null", api.POST("y", Map.class).get("encoding"));
+
+		var deflated = new JsonAPI(this.config, "/compressed?deflate").GETAsync(Map.class).join();
+		assertEquals(10000, ((String) deflated.get("padding")).length());
+	}
+
+	@Test
+	public void test_executeAll() {
+		var api = new JsonAPI(this.config, "/item");
+		var requests = new ArrayList<JsonAPIRequest>();
+		for (int i = 0; i < 30; i++) {
+			requests.add(JsonAPIRequest.GET("/" + i));
+		}
+
+		var progress = new AtomicInteger();
+		var batch = api.<Map<String, Integer>> executeAll(requests, 4, true,
+				api.constructType(new TypeReference<Map<String, Integer>>() {
+				}), b -> progress.incrementAndGet());
+
+		int expected = 0;
+		for (var item : (Iterable<JsonAPIBatch.Item<Map<String, Integer>>>) () -> batch) {
+			assertEquals(expected, item.getIndex());
+			if (expected == 13) {
+				assertInstanceOf(BadStateException.class, item.getError());
+			} else {
+				assertEquals(expected, item.getBody().get("i"));
+			}
+			expected++;
+		}
+
+		assertEquals(30, expected);
+		assertEquals(30, progress.get());
+		assertEquals(1, batch.getFailed().get());
+		assertTrue(batch.getThroughput() > 0);
+		assertTrue(this.maxItemsInFlight.get() <= 4, "max in flight: " + this.maxItemsInFlight.get());
+	}
+
+	@Test
+	public void test_executeAll_bulkhead() {
+		var policy = new JsonAPILimitPolicy();
+		policy.setMaxConcurrency(2);
+		this.config.setLimitPolicy(policy);
+		var api = new JsonAPI(this.config, "/item");
+		var requests = new ArrayList<JsonAPIRequest>();
+		for (int i = 0; i < 30; i++) {
+			requests.add(JsonAPIRequest.GET("/" + i));
+		}
+
+		// wider than the bulkhead, which has no queue: the window shrinks to it rather than being rejected
+		var batch = api.executeAll(requests, 8, true, Map.class);
+		batch.forEachRemaining(item -> {
+		});
+
+		assertEquals(1, batch.getFailed().get());
+		assertEquals(0, JsonAPILimiter.of(policy, api.getUri()).getRejected().get());
+		assertTrue(this.maxItemsInFlight.get() <= 2, "max in flight: " + this.maxItemsInFlight.get());
+	}
+
+	@Test
+	public void test_executeAll_completionOrder() {
+		var api = new JsonAPI(this.config);
+		var requests = List.of(JsonAPIRequest.GET("/herd"), JsonAPIRequest.GET("/echo"));
+
+		// the fast one comes first
+		var indexes = api.executeAll(requests, 2, false, Map.class).stream().map(JsonAPIBatch.Item::getIndex)
+				.collect(Collectors.toList());
+		assertEquals(List.of(1, 0), indexes);
+	}
+
+	interface ItemClient {
+
+		@JsonAPIClient.Call(path = "/item/{id}")
+		Map<String, Integer> get(@JsonAPIClient.Path("id") int id);
+
+		@JsonAPIClient.Call(path = "/item/{id}")
+		CompletableFuture<JsonAPIResult<Map<String, Integer>>> getAsync(@JsonAPIClient.Path("id") int id);
+
+		@JsonAPIClient.Call(method = "POST", path = "/echo")
+		Map<String, String> echo(@JsonAPIClient.Body List<Integer> body, @JsonAPIClient.Query("q") List<String> q,
+				@JsonAPIClient.Query("skipped") String skipped);
+
+		default int twice(int id) {
+			return get(id).get("i") * 2;
+		}
+
+	}
+
+	@Test
+	public void test_client() {
+		var client = JsonAPIClient.create(ItemClient.class, new JsonAPI(this.config));
+
+		assertEquals(5, client.get(5).get("i"));
+		assertEquals(7, client.getAsync(7).join().getBody().get("i"));
+		assertEquals(12, client.twice(6));
+
+		var echo = client.echo(List.of(1, 2), List.of("a b", "c"), null);
+		assertEquals("POST", echo.get("method"));
+		assertEquals("5", echo.get("body"));
+		assertEquals("q=a%20b&q=c", echo.get("query"));
+
+		var ex = assertThrows(CompletionException.class, () -> client.getAsync(13).join());
+		assertInstanceOf(BadStateException.class, ex.getCause());
+	}
+
+	@Test
+	public void test_paginate() {
+		var api = new JsonAPI(this.config, "/pages");
+		var styles = Map.of("/cursor", JsonAPIPagination.cursor("/meta/next", "cursor"), "/offset?limit=10",
+				JsonAPIPagination.offset("offset", 10), "/link", JsonAPIPagination.LINK);
+
+		for (var e : styles.entrySet()) {
+			var pager = api.paginate(e.getKey(), e.getValue(), e.getKey().equals("/cursor") ? "/data" : "", Map.class);
+			var indexes = pager.stream().map(item -> item.get("i")).collect(Collectors.toList());
+
+			assertEquals(IntStream.range(0, 25).boxed().collect(Collectors.toList()), indexes, e.getKey());
+			assertEquals(3, pager.getPages(), e.getKey());
+		}
+
+		try (var items = api.paginate("/link", JsonAPIPagination.LINK, "", Map.class).stream()) {
+			assertEquals(List.of(0, 1), items.limit(2).map(item -> item.get("i")).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void test_async_errorResponse() {
+		var api = new JsonAPI(this.config, "/fail");
+
+		var ex = assertThrows(CompletionException.class, () -> api.GETAsync(Map.class).join());
+		assertInstanceOf(BadStateException.class, ex.getCause());
+		assertTrue(ex.getCause().getMessage().contains("503"), ex.getCause().getMessage());
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+public class JsonElementPublisherTest {
+
+	static class Upstream implements Flow.Subscription {
+
+		final JsonElementPublisher<?> publisher;
+
+		final byte[] bytes;
+
+		int offset;
+
+		int requested;
+
+		Upstream(JsonElementPublisher<?> publisher, byte[] bytes) {
+			this.publisher = publisher;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void request(long n) {
+			this.requested++;
+			if (this.offset >= this.bytes.length) {
+				this.publisher.onComplete();
+				return;
+			}
+
+			// 3 bytes per chunk, so that tokens are split across chunks
+			int len = Math.min(3, this.bytes.length - this.offset);
+			var chunk = ByteBuffer.wrap(this.bytes, this.offset, len);
+			this.offset += len;
+			this.publisher.onNext(List.of(chunk));
+		}
+
+		@Override
+		public void cancel() {
+		}
+
+	}
+
+	@Test
+	public void test_chunked() {
+		var mapper = Jackson.DEFAULT.getMapper();
+		var publisher = new JsonElementPublisher<String>(mapper, mapper.constructType(String.class));
+
+		var json = "[\"alpha\", \"beta\", \"gamma\", \"delta\"]".getBytes(StandardCharsets.UTF_8);
+		var upstream = new Upstream(publisher, json);
+		publisher.onSubscribe(upstream);
+
+		var received = new ArrayList<String>();
+		var subscription = new Flow.Subscription[1];
+		publisher.subscribe(new Flow.Subscriber<String>() {
+			@Override
+			public void onSubscribe(Flow.Subscription s) {
+				subscription[0] = s;
+			}
+
+			@Override
+			public void onNext(String item) {
+				received.add(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				received.add("error: " + throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				received.add("done");
+			}
+		});
+
+		// nothing is read from upstream without demand
+		assertEquals(0, upstream.requested);
+
+		subscription[0].request(1);
+		assertEquals(List.of("alpha"), received);
+		int requested = upstream.requested;
+
+		subscription[0].request(Long.MAX_VALUE);
+		assertEquals(List.of("alpha", "beta", "gamma", "delta", "done"), received);
+		assertTrue(requested < upstream.requested);
+	}
+
+}
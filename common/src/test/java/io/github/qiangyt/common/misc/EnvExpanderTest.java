@@ -0,0 +1,91 @@
+/*
+ * io.github.qiangyt:qiangyt-common - Common library by Yiting Qiang
+ * Copyright © 2023 Yiting Qiang (qiangyt@wxcount.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.qiangyt.common.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.text.StringSubstitutor;
+import org.junit.jupiter.api.Test;
+
+import io.github.qiangyt.common.err.BadValueException;
+
+public class EnvExpanderTest {
+
+	static final Map<String, String> VARS = Map.of("A", "a", "B", "b${A}", "EMPTY", "", "NAME", "A");
+
+	@Test
+	public void test_sameAsStringSubstitutor() {
+		var t = new EnvExpander(false, false, VARS);
+		var expected = new StringSubstitutor(new HashMap<>(VARS));
+
+		for (var input : new String[] { "", "plain", "${A}", "x${A}y", "${A}${B}", "${B}", "${X}", "x${X}y${A}",
+				"${X:-dflt}", "${X:-${A}}", "${A:-dflt}", "$${A}", "x$${A}${A}", "$$${A}", "${EMPTY}", "${}",
+				"${A", "$A", "a $ b", "${${NAME}}", "${A}}", "{${A}}" }) {
+			assertEquals(expected.replace(input), t.expand(input), input);
+		}
+	}
+
+	@Test
+	public void test_noPlaceholder() {
+		var t = new EnvExpander(false, false, VARS);
+
+		var input = "no placeholder $ here";
+		assertSame(input, t.expand(input));
+	}
+
+	@Test
+	public void test_set() {
+		var t = new EnvExpander(false, false, VARS);
+		assertEquals("x-a", t.expand("x-${A}"));
+
+		t.set("A", "changed");
+		assertEquals("x-changed", t.expand("x-${A}"));
+	}
+
+	@Test
+	public void test_child() {
+		var parent = new EnvExpander(false, false, VARS);
+		parent.set("P", "p1");
+
+		var child = new EnvExpander(parent);
+		child.set("A", "child");
+		parent.set("P", "p2");
+
+		assertEquals("child-p1-bchild", child.expand("${A}-${P}-${B}"));
+		assertEquals("a-p2", parent.expand("${A}-${P}"));
+		assertEquals("p1", child.getEnvVars().get("P"));
+	}
+
+	@Test
+	public void test_cyclic() {
+		var t = new EnvExpander(false, false, Map.of("C1", "${C2}", "C2", "${C1}"));
+		assertThrows(BadValueException.class, () -> t.expand("${C1}"));
+	}
+
+	@Test
+	public void test_dotEnvIncludesSystemEnv() {
+		var name = System.getenv().keySet().iterator().next();
+		var t = new EnvExpander(true, false, null);
+		assertEquals(System.getenv(name), t.get(name), name);
+	}
+
+}